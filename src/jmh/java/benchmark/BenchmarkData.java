@@ -0,0 +1,54 @@
+package benchmark;
+
+import model.*;
+
+import java.util.Random;
+
+// Wallets shaped like real ones: half expense and half income categories, amounts in cents.
+final class BenchmarkData {
+    private BenchmarkData() {
+    }
+
+    static String categoryName(int index) {
+        return "category-" + index;
+    }
+
+    static boolean isExpense(int categoryIndex) {
+        return categoryIndex % 2 == 0;
+    }
+
+    static Wallet wallet(int categoryCount, int historySize, long seed) {
+        Wallet wallet = new Wallet();
+        fill(wallet, categoryCount, historySize, seed);
+        return wallet;
+    }
+
+    static void fill(Wallet wallet, int categoryCount, int historySize, long seed) {
+        for (int i = 0; i < categoryCount; i++) {
+            wallet.addCategory(isExpense(i)
+                    ? new ExpenseCategory(categoryName(i), 50_000)
+                    : new IncomeCategory(categoryName(i)));
+        }
+
+        Transaction[] transactions = transactions(categoryCount, historySize, seed);
+        for (Transaction transaction : transactions) {
+            try {
+                wallet.addTransaction(transaction);
+            } catch (Wallet.CategoryNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    static Transaction[] transactions(int categoryCount, int count, long seed) {
+        Random random = new Random(seed);
+        long start = System.currentTimeMillis() - 365L * 86_400_000L;
+        Transaction[] transactions = new Transaction[count];
+        for (int i = 0; i < count; i++) {
+            int category = random.nextInt(categoryCount);
+            long timestamp = start + (long) (random.nextDouble() * 365 * 86_400_000L);
+            transactions[i] = new Transaction(categoryName(category), 1 + random.nextInt(100_000), isExpense(category), timestamp);
+        }
+        return transactions;
+    }
+}
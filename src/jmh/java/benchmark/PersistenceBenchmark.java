@@ -0,0 +1,64 @@
+package benchmark;
+
+import model.User;
+import model.Wallet;
+import org.openjdk.jmh.annotations.*;
+import service.UserStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Save and load of one user through the per-user store, the same calls a checkpoint and a
+// login make, at growing history sizes.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+    private static final String USERNAME = "benchmark";
+
+    @Param({"1000", "100000", "1000000"})
+    int transactions;
+
+    private Path directory;
+    private UserStore store;
+    private User user;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("finance-bench");
+        store = new UserStore(directory, "users");
+        user = new User(USERNAME, "password");
+        BenchmarkData.fill(user.getWallet(), 100, transactions, 42);
+
+        store.write(user);
+        store.commit();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        store.write(user);
+        store.commit();
+    }
+
+    @Benchmark
+    public Wallet load() throws IOException {
+        return store.read(USERNAME).getWallet();
+    }
+}
@@ -0,0 +1,64 @@
+package benchmark;
+
+import model.Wallet;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReportBenchmark {
+    @Param({"10", "1000", "10000"})
+    int categoryCount;
+
+    @Param({"100000"})
+    int historySize;
+
+    private Wallet wallet;
+    private String expenseCategory;
+    private LocalDate from;
+    private LocalDate to;
+
+    @Setup
+    public void setUp() {
+        wallet = BenchmarkData.wallet(categoryCount, historySize, 42);
+        expenseCategory = BenchmarkData.categoryName(0);
+        to = LocalDate.now();
+        from = to.minusMonths(3);
+    }
+
+    @Benchmark
+    public String getTotalIncome() {
+        return wallet.getTotalIncome();
+    }
+
+    @Benchmark
+    public String getTotalExpenses() {
+        return wallet.getTotalExpenses();
+    }
+
+    @Benchmark
+    public String getIncomeByCategories() {
+        return wallet.getIncomeByCategories();
+    }
+
+    @Benchmark
+    public String getExpensesByCategories() {
+        return wallet.getExpensesByCategories();
+    }
+
+    @Benchmark
+    public String getExpenseByCategory() throws Wallet.CategoryNotFoundException, Wallet.InvalidCategoryTypeException {
+        return wallet.getExpenseByCategory(expenseCategory);
+    }
+
+    @Benchmark
+    public long getExpensesBetween() {
+        return wallet.getExpensesBetween(from, to);
+    }
+}
@@ -0,0 +1,43 @@
+package benchmark;
+
+import model.Transaction;
+import model.Wallet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WalletBenchmark {
+    @Param({"10", "1000"})
+    int categoryCount;
+
+    @Param({"0", "100000"})
+    int historySize;
+
+    private Wallet wallet;
+    private Transaction[] transactions;
+    private int next;
+
+    // A fresh wallet per iteration keeps the history size close to the parameter.
+    @Setup(Level.Iteration)
+    public void setUp() {
+        wallet = BenchmarkData.wallet(categoryCount, historySize, 42);
+        transactions = BenchmarkData.transactions(categoryCount, 1024, 7);
+        next = 0;
+    }
+
+    @Benchmark
+    public void addTransaction() throws Wallet.CategoryNotFoundException {
+        wallet.addTransaction(transactions[next++ & (transactions.length - 1)]);
+    }
+
+    @Benchmark
+    public boolean addTransactionCreatingCategory() {
+        return wallet.addTransactionCreatingCategory(transactions[next++ & (transactions.length - 1)]);
+    }
+}
@@ -1,10 +1,99 @@
 package main;
 
 import service.FinanceManager;
+import service.LoadGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.YearMonth;
 
 public class Main {
     public static void main(String[] args) {
+        String batchFile = null;
+        int commitEvery = 10_000;
+        String statementDir = null;
+        String format = "text";
+        YearMonth month = null;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        int port = -1;
+        String host = "127.0.0.1";
+        String loadDir = null;
+        int users = 1000;
+        int categories = 50;
+        long transactions = 1_000_000;
+        double skew = 1.0;
+        long seed = 42;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--batch") && i + 1 < args.length) {
+                batchFile = args[++i];
+            } else if (args[i].equals("--commit-every") && i + 1 < args.length) {
+                commitEvery = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--statements") && i + 1 < args.length) {
+                statementDir = args[++i];
+            } else if (args[i].equals("--format") && i + 1 < args.length) {
+                format = args[++i];
+            } else if (args[i].equals("--month") && i + 1 < args.length) {
+                month = YearMonth.parse(args[++i]);
+            } else if (args[i].equals("--parallelism") && i + 1 < args.length) {
+                parallelism = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--serve") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--host") && i + 1 < args.length) {
+                host = args[++i];
+            } else if (args[i].equals("--loadgen") && i + 1 < args.length) {
+                loadDir = args[++i];
+            } else if (args[i].equals("--users") && i + 1 < args.length) {
+                users = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--categories") && i + 1 < args.length) {
+                categories = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--transactions") && i + 1 < args.length) {
+                transactions = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--skew") && i + 1 < args.length) {
+                skew = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--seed") && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            }
+        }
+
+        // The load generator works in its own directory and must not open the real data files.
+        if (loadDir != null) {
+            try {
+                new LoadGenerator(new LoadGenerator.Config(Paths.get(loadDir), users, categories, transactions, skew, parallelism, seed)).run(System.out);
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Error running load generator: " + e.getMessage());
+            }
+            return;
+        }
+
         FinanceManager fm = new FinanceManager();
-        fm.start();
+        if (statementDir != null) {
+            LocalDate from = month == null ? null : month.atDay(1);
+            LocalDate to = month == null ? null : month.atEndOfMonth();
+            fm.runStatements(Paths.get(statementDir), format, from, to, parallelism);
+            return;
+        }
+        if (port >= 0) {
+            fm.runServer(new InetSocketAddress(host, port));
+            return;
+        }
+        if (batchFile == null) {
+            fm.start();
+            return;
+        }
+
+        try {
+            Reader input = batchFile.equals("-") ? new InputStreamReader(System.in) : new FileReader(batchFile);
+            fm.runBatch(input, new PrintStream(new BufferedOutputStream(System.out, 64 * 1024), false), Math.max(1, commitEvery));
+        } catch (FileNotFoundException e) {
+            System.out.println("Error opening batch file: " + e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,7 @@
+package model;
+
+// Receives threshold crossings detected while a wallet changes. Called under the wallet's write
+// lock, so implementations must only record the alert.
+public interface AlertListener {
+    void alert(String message);
+}
@@ -1,25 +1,50 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 
 abstract public class Category implements Serializable {
+    private static final long serialVersionUID = 8720545991604581091L;
+
     protected String name;
-    protected double currentAmount;
+    protected long currentCents;
+    transient Wallet wallet;
+    transient DayIndex days = new DayIndex();
+    // Sums and day indexes of transactions in other currencies, by the wallet's currency id; null
+    // until the category has any. currentCents and days hold the home currency only.
+    transient long[] foreignCents;
+    transient DayIndex[] foreignDays;
 
     public Category(String name) {
         this.name = name;
-        this.currentAmount = 0;
+        this.currentCents = 0;
     }
 
     public String getName() {
         return name;
     }
 
-    public double getCurrentAmount() {
-        return currentAmount;
+    // In the home currency, with other currencies converted at the current exchange rates.
+    public long getCurrentAmount() {
+        return foreignCents == null || wallet == null ? currentCents : wallet.convert(currentCents, foreignCents);
+    }
+
+    // Only Wallet changes amounts, under its write lock, so its running totals stay in step.
+    void addAmount(long amount) {
+        currentCents += amount;
     }
 
-    public void addAmount(double amount) {
-        currentAmount += amount;
+    // Detached copy of the persistent fields, for snapshots taken under the wallet lock.
+    abstract Category copy();
+
+    // Categories saved before amounts moved to cents stored a double currentAmount.
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        name = (String) fields.get("name", null);
+        currentCents = fields.defaulted("currentCents")
+                ? Money.fromDouble(fields.get("currentAmount", 0.0))
+                : fields.get("currentCents", 0L);
+        days = new DayIndex();
     }
 }
@@ -0,0 +1,15 @@
+package model;
+
+// One row of a batch category lookup. amount and budget are in cents and only meaningful when
+// the status is FOUND; budget is 0 for income categories and for expenses without a budget.
+public record CategoryResult(String name, Status status, long amount, long budget) {
+    public enum Status { FOUND, NOT_FOUND, WRONG_TYPE }
+
+    public boolean found() {
+        return status == Status.FOUND;
+    }
+
+    public long remaining() {
+        return budget - amount;
+    }
+}
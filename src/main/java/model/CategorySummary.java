@@ -0,0 +1,8 @@
+package model;
+
+// Typed form of one category line of a report; amounts are in cents.
+public record CategorySummary(String name, boolean expense, long amount, long budget) {
+    public long remaining() {
+        return budget - amount;
+    }
+}
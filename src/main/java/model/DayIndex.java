@@ -0,0 +1,92 @@
+package model;
+
+// Per-day sums over a sliding window of days, stored as a Fenwick tree so that the total for any
+// day range costs O(log days). The window grows by doubling when an out-of-range day arrives.
+class DayIndex {
+    private static final int INITIAL_DAYS = 64;
+
+    private long baseDay;
+    private long[] tree;
+
+    void add(long day, long amount) {
+        cover(day, false);
+        for (int i = (int) (day - baseDay) + 1; i < tree.length; i += i & -i) {
+            tree[i] += amount;
+        }
+    }
+
+    // Bulk loading: addRaw keeps plain per-day sums and build() turns them into the tree in one
+    // O(days) pass, instead of O(log days) per add. No other call is valid in between.
+    void addRaw(long day, long amount) {
+        cover(day, true);
+        tree[(int) (day - baseDay) + 1] += amount;
+    }
+
+    void build() {
+        if (tree != null) {
+            fenwick(tree);
+        }
+    }
+
+    private void cover(long day, boolean raw) {
+        if (tree == null) {
+            baseDay = day;
+            tree = new long[INITIAL_DAYS + 1];
+        } else if (day < baseDay || day >= baseDay + tree.length - 1) {
+            grow(day, raw);
+        }
+    }
+
+    // Sum of the amounts for days in [fromDay, toDay], both inclusive.
+    long sum(long fromDay, long toDay) {
+        if (tree == null || fromDay > toDay) {
+            return 0;
+        }
+        return prefix(toDay) - prefix(fromDay - 1);
+    }
+
+    private long prefix(long day) {
+        long offset = Math.min(day - baseDay + 1, tree.length - 1);
+        long sum = 0;
+        for (int i = (int) Math.max(offset, 0); i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private void grow(long day, boolean raw) {
+        int days = tree.length - 1;
+        long low = Math.min(baseDay, day);
+        long high = Math.max(baseDay + days, day + 1);
+        int capacity = (int) Math.max(2L * days, high - low);
+        long newBase = day < baseDay ? high - capacity : low;
+
+        // Undo the Fenwick build to get the raw per-day values back, then rebuild at the new base.
+        if (!raw) {
+            for (int i = days; i > 0; i--) {
+                int parent = i + (i & -i);
+                if (parent <= days) {
+                    tree[parent] -= tree[i];
+                }
+            }
+        }
+        long[] next = new long[capacity + 1];
+        System.arraycopy(tree, 1, next, (int) (baseDay - newBase) + 1, days);
+        if (!raw) {
+            fenwick(next);
+        }
+
+        tree = next;
+        baseDay = newBase;
+    }
+
+    private static void fenwick(long[] values) {
+        int size = values.length - 1;
+        for (int i = 1; i <= size; i++) {
+            int parent = i + (i & -i);
+            if (parent <= size) {
+                values[parent] += values[i];
+            }
+        }
+    }
+}
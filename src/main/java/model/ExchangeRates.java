@@ -0,0 +1,83 @@
+package model;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Exchange rates into the home currency, the one untagged amounts are in (-Dfinance.currency,
+// USD by default; it must not change once data exists). A rate is the home-currency value of one
+// unit of the other currency. Tables are immutable: a reload installs a new one with a new
+// version, which is how wallets tell that their cached converted totals are stale.
+public final class ExchangeRates {
+    public static final String HOME = System.getProperty("finance.currency", "USD").toUpperCase();
+
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    private static volatile ExchangeRates current = new ExchangeRates(Map.of());
+
+    private final Map<String, Double> rates;
+    private final long version;
+
+    public ExchangeRates(Map<String, Double> rates) {
+        this.rates = Map.copyOf(rates);
+        this.version = VERSIONS.incrementAndGet();
+    }
+
+    public static ExchangeRates current() {
+        return current;
+    }
+
+    public static void setCurrent(ExchangeRates rates) {
+        current = rates;
+    }
+
+    // Three ASCII letters in any case, e.g. "eur".
+    public static boolean isCode(String text) {
+        if (text == null || text.length() != 3) {
+            return false;
+        }
+        for (int i = 0; i < 3; i++) {
+            char c = text.charAt(i);
+            if (!(c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The code a transaction is tagged with: upper case, or null for the home currency.
+    public static String normalize(String code) {
+        if (code == null || code.isBlank()) {
+            return null;
+        }
+        if (!isCode(code.trim())) {
+            throw new IllegalArgumentException("Invalid currency code: \"" + code + "\"");
+        }
+        String normalized = code.trim().toUpperCase();
+        return normalized.equals(HOME) ? null : normalized;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public int size() {
+        return rates.size();
+    }
+
+    public boolean has(String code) {
+        return code == null || rates.containsKey(code);
+    }
+
+    // NaN for a currency without a rate.
+    public double rate(String code) {
+        if (code == null) {
+            return 1;
+        }
+        Double rate = rates.get(code);
+        return rate == null ? Double.NaN : rate;
+    }
+
+    public Map<String, Double> asMap() {
+        return new TreeMap<>(rates);
+    }
+}
@@ -1,22 +1,49 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
 public class ExpenseCategory extends Category {
-    private double budget;
+    private static final long serialVersionUID = 6775934263334659028L;
+
+    private long budgetCents;
 
-    public ExpenseCategory(String name, double budget) {
+    public ExpenseCategory(String name, long budget) {
         super(name);
-        this.budget = budget;
+        this.budgetCents = budget;
+    }
+
+    public void setBudget(long budget) {
+        if (wallet != null) {
+            wallet.changeBudget(this, budget);
+        } else {
+            applyBudget(budget);
+        }
+    }
+
+    void applyBudget(long budget) {
+        this.budgetCents = budget;
+    }
+
+    public long getBudget() {
+        return budgetCents;
     }
 
-    public void setBudget(double budget) {
-        this.budget = budget;
+    public long getRemainingBudget() {
+        return budgetCents - getCurrentAmount();
     }
 
-    public double getBudget() {
-        return budget;
+    @Override
+    Category copy() {
+        ExpenseCategory copy = new ExpenseCategory(name, budgetCents);
+        copy.currentCents = currentCents;
+        return copy;
     }
 
-    public double getRemainingBudget() {
-        return budget - currentAmount;
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        budgetCents = fields.defaulted("budgetCents")
+                ? Money.fromDouble(fields.get("budget", 0.0))
+                : fields.get("budgetCents", 0L);
     }
 }
@@ -1,8 +1,16 @@
 package model;
 
-
 public class IncomeCategory extends Category {
+    private static final long serialVersionUID = -1301725780766287794L;
+
     public IncomeCategory(String name) {
         super(name);
     }
+
+    @Override
+    Category copy() {
+        IncomeCategory copy = new IncomeCategory(name);
+        copy.currentCents = currentCents;
+        return copy;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package model;
+
+// Log-linear histogram of nanosecond latencies: 16 buckets per power of two (about 6%
+// resolution) in a fixed array, so recording millions of samples allocates nothing. Not thread
+// safe; Metrics keeps its own atomic counters in the same bucket layout.
+public final class LatencyHistogram {
+    // 16 buckets per power of two, up to 2^63 ns.
+    public static final int BUCKETS = 64 * 16;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long max;
+
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        counts[bucket(nanos)]++;
+        count++;
+        max = Math.max(max, nanos);
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        max = Math.max(max, other.max);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public long percentile(double percent) {
+        return percentile(counts, count, percent);
+    }
+
+    // Lower bound of the bucket holding the given percentile of count samples, or 0 for none.
+    static long percentile(long[] counts, long count, double percent) {
+        long rank = Math.max(1, (long) Math.ceil(count * percent / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return lowerBound(i);
+            }
+        }
+        return 0;
+    }
+
+    static int bucket(long value) {
+        if (value < 16) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        return (magnitude - 3) * 16 + (int) ((value >>> (magnitude - 4)) & 15);
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < 16) {
+            return bucket;
+        }
+        int magnitude = bucket / 16 + 3;
+        return (16L + bucket % 16) << (magnitude - 4);
+    }
+}
@@ -0,0 +1,109 @@
+package model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide latency metrics for commands, persistence and the wallet hot paths: one timer per
+// operation with lock-free counters and a log-linear histogram. Off unless the JVM is started
+// with -Dfinance.metrics=true. When off, start() and stop() reduce to a check of a static final
+// flag that the JIT folds away, and timer() hands out one shared inert timer.
+//
+//   long started = Metrics.start();
+//   ...
+//   TIMER.stop(started);
+public final class Metrics {
+    public static final boolean ENABLED = Boolean.getBoolean("finance.metrics");
+
+    private static final Map<String, Timer> TIMERS = new ConcurrentSkipListMap<>();
+    private static final Timer DISABLED = new Timer("disabled", 0);
+    // The bucket layout of LatencyHistogram.
+    private static final int BUCKETS = LatencyHistogram.BUCKETS;
+    // Threads record into one of several copies of the histogram, so timers hit from many threads
+    // at once do not all contend on the same cache lines. A power of two.
+    private static final int STRIPES = Integer.highestOneBit(Math.min(8, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+
+    private Metrics() {
+    }
+
+    // The timer registered under name, created on first use.
+    public static Timer timer(String name) {
+        if (!ENABLED) {
+            return DISABLED;
+        }
+        return TIMERS.computeIfAbsent(name, key -> new Timer(key, STRIPES * BUCKETS));
+    }
+
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    // One line per timer that has recorded anything, sorted by name, times in microseconds.
+    public static String report() {
+        if (!ENABLED) {
+            return "Metrics are off; start with -Dfinance.metrics=true to collect them." + System.lineSeparator();
+        }
+
+        StringBuilder report = new StringBuilder(String.format("%-28s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "mean us", "p50 us", "p99 us", "p99.9 us", "max us"));
+        for (Timer timer : TIMERS.values()) {
+            long[] counts = timer.counts();
+            long count = 0;
+            for (long bucket : counts) {
+                count += bucket;
+            }
+            if (count == 0) {
+                continue;
+            }
+            report.append(String.format("%-28s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n", timer.name, count,
+                    timer.totalNanos.sum() / 1000.0 / count, LatencyHistogram.percentile(counts, count, 50) / 1000.0,
+                    LatencyHistogram.percentile(counts, count, 99) / 1000.0, LatencyHistogram.percentile(counts, count, 99.9) / 1000.0,
+                    timer.maxNanos.get() / 1000.0));
+        }
+        return report.toString();
+    }
+
+    // Safe to record from any number of threads; readers see a slightly racy but never torn view.
+    // Stripe s holds buckets [s * BUCKETS, (s + 1) * BUCKETS).
+    public static final class Timer {
+        private final String name;
+        private final AtomicLongArray buckets;
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Timer(String name, int buckets) {
+            this.name = name;
+            this.buckets = new AtomicLongArray(buckets);
+        }
+
+        public void stop(long startedNanos) {
+            if (ENABLED) {
+                record(System.nanoTime() - startedNanos);
+            }
+        }
+
+        public void record(long nanos) {
+            if (!ENABLED || buckets.length() == 0) {
+                return;
+            }
+            nanos = Math.max(0, nanos);
+            int stripe = (int) Thread.currentThread().threadId() & (STRIPES - 1);
+            buckets.incrementAndGet(stripe * BUCKETS + LatencyHistogram.bucket(nanos));
+            totalNanos.add(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        private long[] counts() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < buckets.length(); i++) {
+                counts[i % BUCKETS] += buckets.get(i);
+            }
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package model;
+
+// Amounts are plain longs holding minor units (cents), so sums are exact integer additions.
+// These helpers parse and print them without going through double or BigDecimal.
+public final class Money {
+    public static final int FRACTION_DIGITS = 2;
+    public static final long UNIT = 100;
+    // Returned by the non-throwing parse for malformed input; no valid amount can take this value.
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private Money() {
+    }
+
+    // Accepts an optional sign, digits and up to two fraction digits, e.g. "12", "-3.5", "0.07".
+    public static long parse(CharSequence text) {
+        long cents = parse(text, 0, text.length());
+        if (cents == INVALID) {
+            throw new NumberFormatException("Invalid amount: \"" + text + "\"");
+        }
+        return cents;
+    }
+
+    // Parses text[start, end) like parse(CharSequence) but returns INVALID instead of throwing,
+    // for bulk parsers where a bad row is an expected outcome rather than an exception.
+    public static long parse(CharSequence text, int start, int end) {
+        int i = start;
+        boolean negative = false;
+
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+
+        long units = 0;
+        int digits = 0;
+        for (; i < end && text.charAt(i) != '.'; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || units > (Long.MAX_VALUE / UNIT - 1 - digit) / 10) {
+                return INVALID;
+            }
+            units = units * 10 + digit;
+            digits++;
+        }
+
+        long fraction = 0;
+        int fractionDigits = 0;
+        if (i < end) {
+            for (i++; i < end; i++) {
+                int digit = text.charAt(i) - '0';
+                if (digit < 0 || digit > 9 || ++fractionDigits > FRACTION_DIGITS) {
+                    return INVALID;
+                }
+                fraction = fraction * 10 + digit;
+            }
+            for (int k = fractionDigits; k < FRACTION_DIGITS; k++) {
+                fraction *= 10;
+            }
+        }
+
+        if (digits == 0 && fractionDigits == 0) {
+            return INVALID;
+        }
+
+        long cents = units * UNIT + fraction;
+        return negative ? -cents : cents;
+    }
+
+    // The magnitude is handled as unsigned, so Long.MIN_VALUE, whose negation overflows, still
+    // prints correctly.
+    public static StringBuilder appendTo(StringBuilder target, long cents) {
+        if (cents < 0) {
+            target.append('-');
+        }
+        long abs = cents < 0 ? -cents : cents;
+        long fraction = Long.remainderUnsigned(abs, UNIT);
+        target.append(Long.divideUnsigned(abs, UNIT)).append('.');
+        if (fraction < 10) {
+            target.append('0');
+        }
+        return target.append(fraction);
+    }
+
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(24), cents).toString();
+    }
+
+    public static long fromDouble(double amount) {
+        return Math.round(amount * UNIT);
+    }
+}
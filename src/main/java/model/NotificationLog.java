@@ -0,0 +1,142 @@
+package model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+// Bounded history of a user's notifications: a ring buffer that keeps the newest `capacity`
+// entries, so memory and snapshot size stay flat however old the account is. An alert equal to
+// the newest entry is folded into it as a repeat count instead of taking another slot.
+// Entries newer than the read mark are unread.
+public class NotificationLog implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("finance.notifications.retain", 100);
+
+    public record Notification(String message, long timestamp, int count) {
+        @Override
+        public String toString() {
+            return count > 1 ? message + " (x" + count + ")" : message;
+        }
+    }
+
+    private final int capacity;
+    private transient Notification[] entries;
+    // Total entries ever added; entry number n lives in slot n % capacity while n >= added - size.
+    private transient long added;
+    private transient long readMark;
+
+    public NotificationLog(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.entries = new Notification[this.capacity];
+    }
+
+    NotificationLog copy() {
+        NotificationLog copy = new NotificationLog(capacity);
+        System.arraycopy(entries, 0, copy.entries, 0, capacity);
+        copy.added = added;
+        copy.readMark = readMark;
+        return copy;
+    }
+
+    public int size() {
+        return (int) Math.min(added, capacity);
+    }
+
+    public void add(String message, long timestamp) {
+        if (added > 0) {
+            int newest = slot(added - 1);
+            if (entries[newest].message().equals(message)) {
+                entries[newest] = new Notification(message, timestamp, entries[newest].count() + 1);
+                readMark = Math.min(readMark, added - 1);
+                return;
+            }
+        }
+        entries[slot(added)] = new Notification(message, timestamp, 1);
+        added++;
+    }
+
+    // Unread entries, oldest first, which are then marked as read. Entries that fell out of the
+    // buffer before being read are gone.
+    public List<Notification> drainUnread() {
+        long from = Math.max(readMark, added - size());
+        List<Notification> unread = new ArrayList<>((int) (added - from));
+        for (long n = from; n < added; n++) {
+            unread.add(entries[slot(n)]);
+        }
+        readMark = added;
+        return unread;
+    }
+
+    // Page 0 holds the newest pageSize entries, page 1 the ones before them, and so on.
+    public List<Notification> page(int page, int pageSize) {
+        long end = added - (long) page * pageSize;
+        long start = Math.max(added - size(), end - pageSize);
+        List<Notification> result = new ArrayList<>();
+        for (long n = end - 1; n >= start; n--) {
+            result.add(entries[slot(n)]);
+        }
+        return result;
+    }
+
+    private int slot(long n) {
+        return (int) (n % capacity);
+    }
+
+    void encode(SnapshotCodec.Output out) {
+        int size = size();
+        out.unsigned(capacity);
+        out.unsigned(size);
+        out.unsigned(Math.min(added - readMark, size));
+        for (long n = added - size; n < added; n++) {
+            Notification entry = entries[slot(n)];
+            out.string(entry.message());
+            out.signed(entry.timestamp());
+            out.unsigned(entry.count());
+        }
+    }
+
+    static NotificationLog decode(SnapshotCodec.Input in) {
+        NotificationLog log = new NotificationLog((int) in.unsigned());
+        int size = in.count();
+        int unread = (int) in.unsigned();
+        for (int i = 0; i < size; i++) {
+            Notification entry = new Notification(in.string(), in.signed(), (int) in.unsigned());
+            if (i >= size - log.capacity) {
+                log.entries[log.slot(log.added++)] = entry;
+            }
+        }
+        log.readMark = log.added - Math.min(unread, log.added);
+        return log;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        int size = size();
+        out.writeInt(size);
+        out.writeInt((int) Math.min(added - readMark, size));
+        for (long n = added - size; n < added; n++) {
+            Notification entry = entries[slot(n)];
+            out.writeUTF(entry.message());
+            out.writeLong(entry.timestamp());
+            out.writeInt(entry.count());
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int size = in.readInt();
+        int unread = in.readInt();
+        entries = new Notification[capacity];
+        added = 0;
+        for (int i = 0; i < size; i++) {
+            Notification entry = new Notification(in.readUTF(), in.readLong(), in.readInt());
+            if (i >= size - capacity) {
+                entries[slot(added++)] = entry;
+            }
+        }
+        readMark = added - Math.min(unread, added);
+    }
+}
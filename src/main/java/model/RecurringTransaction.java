@@ -0,0 +1,93 @@
+package model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// A transaction that repeats every period from a start date, such as a salary or rent. The
+// schedule is anchored to the start date and counts occurrences rather than storing the next
+// date, so monthly entries on the 31st come back to the 31st after a short month.
+public class RecurringTransaction implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Frequency { DAILY, WEEKLY, MONTHLY, YEARLY }
+
+    private int id;
+    private final String category;
+    private final long amountCents;
+    private final boolean isExpense;
+    private final Frequency frequency;
+    private final long startDay;
+    private int occurrences;
+
+    public RecurringTransaction(String category, long amount, boolean isExpense, Frequency frequency, LocalDate start) {
+        this.category = category;
+        this.amountCents = amount;
+        this.isExpense = isExpense;
+        this.frequency = frequency;
+        this.startDay = start.toEpochDay();
+    }
+
+    RecurringTransaction copy() {
+        RecurringTransaction copy = new RecurringTransaction(category, amountCents, isExpense, frequency, LocalDate.ofEpochDay(startDay));
+        copy.id = id;
+        copy.occurrences = occurrences;
+        return copy;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public long getAmount() {
+        return amountCents;
+    }
+
+    public boolean isExpense() {
+        return isExpense;
+    }
+
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    public LocalDate getStart() {
+        return LocalDate.ofEpochDay(startDay);
+    }
+
+    // Occurrences applied so far.
+    public int getOccurrences() {
+        return occurrences;
+    }
+
+    void setOccurrences(int occurrences) {
+        this.occurrences = occurrences;
+    }
+
+    public long nextDueDay() {
+        return dueDay(occurrences);
+    }
+
+    // Epoch day of the occurrence with the given number, counting from 0 at the start date.
+    long dueDay(int occurrence) {
+        switch (frequency) {
+            case DAILY: return startDay + occurrence;
+            case WEEKLY: return startDay + 7L * occurrence;
+            case MONTHLY: return LocalDate.ofEpochDay(startDay).plusMonths(occurrence).toEpochDay();
+            default: return LocalDate.ofEpochDay(startDay).plusYears(occurrence).toEpochDay();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "#" + id + " " + (isExpense ? "expense" : "income") + " " + category + " " + Money.format(amountCents) + " "
+                + frequency.name().toLowerCase() + " from " + getStart() + ", next on " + LocalDate.ofEpochDay(nextDueDay());
+    }
+}
@@ -0,0 +1,338 @@
+package model;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Binary snapshot format for a user and everything it owns, written field by field instead of
+// through Java serialization: no class descriptors or object handles, integers as varints
+// (zigzag for signed values), category references as dictionary ids, and transaction
+// timestamps as deltas from the previous row. The transaction columns form one block that can
+// be deflated.
+//
+//   header   'F' 'M' 'U' version
+//   user     username, password, notification log, wallet (see the classes' encode methods)
+//
+// Records written by Java serialization start with the stream magic 0xACED; isLegacy tells them
+// apart so they can still be read and rewritten once.
+public final class SnapshotCodec {
+    public static final int VERSION = 1;
+    private static final byte[] MAGIC = {'F', 'M', 'U'};
+    private static final int COMPRESS_MIN_BYTES = 512;
+    private static final byte RAW = 0;
+    private static final byte DEFLATED = 1;
+
+    private SnapshotCodec() {
+    }
+
+    public static byte[] encode(User user, boolean compress) {
+        Output out = new Output(256, compress);
+        out.bytes(MAGIC);
+        out.u8(VERSION);
+        user.encode(out);
+        return out.toByteArray();
+    }
+
+    public static User decode(ByteBuffer buffer) throws IOException {
+        try {
+            for (byte b : MAGIC) {
+                if (buffer.get() != b) {
+                    throw new IOException("Not a user snapshot");
+                }
+            }
+            int version = buffer.get() & 0xFF;
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            return User.decode(new Input(buffer));
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt user snapshot: " + e, e);
+        }
+    }
+
+    public static boolean isLegacy(ByteBuffer buffer) {
+        return buffer.remaining() >= 2 && buffer.get(buffer.position()) == (byte) 0xAC && buffer.get(buffer.position() + 1) == (byte) 0xED;
+    }
+
+    static void writeCategory(Output out, Category category) {
+        out.bool(category instanceof ExpenseCategory);
+        out.string(category.getName());
+        out.signed(category.currentCents);
+        if (category instanceof ExpenseCategory expense) {
+            out.signed(expense.getBudget());
+        }
+    }
+
+    static Category readCategory(Input in) {
+        boolean expense = in.bool();
+        String name = in.string();
+        long current = in.signed();
+        Category category = expense ? new ExpenseCategory(name, in.signed()) : new IncomeCategory(name);
+        category.currentCents = current;
+        return category;
+    }
+
+    static void writeRecurring(Output out, RecurringTransaction definition) {
+        out.unsigned(definition.getId());
+        out.string(definition.getCategory());
+        out.signed(definition.getAmount());
+        out.bool(definition.isExpense());
+        out.u8(definition.getFrequency().ordinal());
+        out.signed(definition.getStart().toEpochDay());
+        out.unsigned(definition.getOccurrences());
+    }
+
+    static RecurringTransaction readRecurring(Input in) {
+        int id = (int) in.unsigned();
+        String category = in.string();
+        long amount = in.signed();
+        boolean expense = in.bool();
+        RecurringTransaction.Frequency frequency = RecurringTransaction.Frequency.values()[in.u8()];
+        RecurringTransaction definition = new RecurringTransaction(category, amount, expense, frequency, LocalDate.ofEpochDay(in.signed()));
+        definition.setId(id);
+        definition.setOccurrences((int) in.unsigned());
+        return definition;
+    }
+
+    // Growable output buffer with the primitive encodings of the format.
+    static final class Output {
+        private final boolean compress;
+        private byte[] bytes;
+        private int size;
+
+        Output(int capacity, boolean compress) {
+            this.bytes = new byte[capacity];
+            this.compress = compress;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + extra, bytes.length * 2));
+            }
+        }
+
+        void u8(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void bool(boolean value) {
+            u8(value ? 1 : 0);
+        }
+
+        void bytes(byte[] value) {
+            bytes(value, 0, value.length);
+        }
+
+        void bytes(byte[] value, int offset, int length) {
+            ensure(length);
+            System.arraycopy(value, offset, bytes, size, length);
+            size += length;
+        }
+
+        void unsigned(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void signed(long value) {
+            unsigned(value << 1 ^ value >> 63);
+        }
+
+        void fixed64(long value) {
+            ensure(8);
+            for (int shift = 0; shift < 64; shift += 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void string(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            unsigned(utf8.length);
+            bytes(utf8);
+        }
+
+        // A length-prefixed section, deflated when compression is on and it pays off.
+        void block(Consumer<Output> body) {
+            Output block = new Output(1024, compress);
+            body.accept(block);
+            if (compress && block.size >= COMPRESS_MIN_BYTES) {
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                deflater.setInput(block.bytes, 0, block.size);
+                deflater.finish();
+                byte[] packed = new byte[block.size];
+                int length = 0;
+                while (!deflater.finished() && length < packed.length) {
+                    length += deflater.deflate(packed, length, packed.length - length);
+                }
+                boolean smaller = deflater.finished();
+                deflater.end();
+                if (smaller) {
+                    u8(DEFLATED);
+                    unsigned(block.size);
+                    unsigned(length);
+                    bytes(packed, 0, length);
+                    return;
+                }
+            }
+            u8(RAW);
+            unsigned(block.size);
+            bytes(block.bytes, 0, block.size);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+    // Reads the encodings of Output from a heap buffer positioned at them, through its backing
+    // array. Reads past the buffer's limit throw BufferUnderflowException.
+    static final class Input {
+        private final byte[] bytes;
+        private final int limit;
+        private int position;
+
+        Input(ByteBuffer buffer) {
+            if (!buffer.hasArray()) {
+                byte[] copy = new byte[buffer.remaining()];
+                buffer.get(copy);
+                buffer = ByteBuffer.wrap(copy);
+            }
+            this.bytes = buffer.array();
+            this.position = buffer.arrayOffset() + buffer.position();
+            this.limit = buffer.arrayOffset() + buffer.limit();
+        }
+
+        private Input(byte[] bytes, int position, int limit) {
+            this.bytes = bytes;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        private void require(int count) {
+            if (limit - position < count) {
+                throw new BufferUnderflowException();
+            }
+        }
+
+        boolean hasRemaining() {
+            return position < limit;
+        }
+
+        int u8() {
+            require(1);
+            return bytes[position++] & 0xFF;
+        }
+
+        boolean bool() {
+            return u8() != 0;
+        }
+
+        long unsigned() {
+            // With ten bytes left no varint can run past the limit, so only the slow path checks.
+            if (limit - position >= 10) {
+                long value = 0;
+                for (int shift = 0; shift < 70; shift += 7) {
+                    byte b = bytes[position++];
+                    value |= (long) (b & 0x7F) << shift;
+                    if (b >= 0) {
+                        return value;
+                    }
+                }
+                throw new IllegalArgumentException("Varint too long");
+            }
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                int b = u8();
+                value |= (long) (b & 0x7F) << shift;
+                if (b < 0x80) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Varint too long");
+        }
+
+        long signed() {
+            long value = unsigned();
+            return value >>> 1 ^ -(value & 1);
+        }
+
+        long fixed64() {
+            require(8);
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 8) {
+                value |= (long) (bytes[position++] & 0xFF) << shift;
+            }
+            return value;
+        }
+
+        int count() {
+            long value = unsigned();
+            if (value > (limit - position) * 8L + 64) {
+                throw new IllegalArgumentException("Count " + value + " exceeds the record");
+            }
+            return (int) value;
+        }
+
+        String string() {
+            int length = (int) unsigned();
+            if (length < 0 || length > limit - position) {
+                throw new IllegalArgumentException("String length " + length + " exceeds the record");
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private Input slice(int length) {
+            if (length < 0 || length > limit - position) {
+                throw new IllegalArgumentException("Block length " + length + " exceeds the record");
+            }
+            Input slice = new Input(bytes, position, position + length);
+            position += length;
+            return slice;
+        }
+
+        Input block() throws IOException {
+            int kind = u8();
+            int rawLength = (int) unsigned();
+            if (kind == RAW) {
+                return slice(rawLength);
+            }
+            if (kind != DEFLATED) {
+                throw new IOException("Unknown block encoding " + kind);
+            }
+
+            Input stored = slice((int) unsigned());
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(stored.bytes, stored.position, stored.limit - stored.position);
+                byte[] raw = new byte[rawLength];
+                int length = 0;
+                while (length < rawLength && !inflater.finished()) {
+                    int read = inflater.inflate(raw, length, rawLength - length);
+                    if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("Truncated compressed block");
+                    }
+                    length += read;
+                }
+                return new Input(raw, 0, length);
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt compressed block: " + e.getMessage(), e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+}
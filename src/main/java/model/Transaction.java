@@ -1,27 +1,93 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.time.LocalDate;
 
 public class Transaction implements Serializable {
+    private static final long serialVersionUID = 4958528043938729438L;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    // Transactions recorded before timestamps were introduced carry no date.
+    public static final long UNDATED = Long.MIN_VALUE;
+    // Dates people can enter. Day indexes span the earliest to the latest date, so a stray
+    // far-off date would make them huge.
+    public static final int MIN_YEAR = 1900;
+    public static final int MAX_YEAR = 2200;
+
     private String name;
-    private double amount;
+    private long amountCents;
     private boolean isExpense;
+    private long timestamp;
+    // ISO code, or null for the home currency (see ExchangeRates).
+    private String currency;
+
+    public Transaction(String name, long amount, boolean isExpense) {
+        this(name, amount, isExpense, System.currentTimeMillis());
+    }
+
+    public Transaction(String name, long amount, boolean isExpense, long timestamp) {
+        this(name, amount, isExpense, timestamp, null);
+    }
 
-    public Transaction(String name, double amount, boolean isExpense) {
+    // Throws IllegalArgumentException for a malformed currency code.
+    public Transaction(String name, long amount, boolean isExpense, long timestamp, String currency) {
         this.name = name;
-        this.amount = amount;
+        this.amountCents = amount;
         this.isExpense = isExpense;
+        this.timestamp = timestamp;
+        this.currency = ExchangeRates.normalize(currency);
+    }
+
+    public static boolean isSupported(LocalDate date) {
+        return date.getYear() >= MIN_YEAR && date.getYear() <= MAX_YEAR;
+    }
+
+    // The date itself, or IllegalArgumentException if it is outside the supported years.
+    public static LocalDate checkDate(LocalDate date) {
+        if (!isSupported(date)) {
+            throw new IllegalArgumentException("Date out of range: " + date + " (years " + MIN_YEAR + "-" + MAX_YEAR + " only)");
+        }
+        return date;
+    }
+
+    public static long timestampOf(LocalDate date) {
+        return date.toEpochDay() * MILLIS_PER_DAY;
+    }
+
+    // Days are counted in UTC, the same way LocalDate.toEpochDay() counts them.
+    public static long dayOf(long timestamp) {
+        return Math.floorDiv(timestamp, MILLIS_PER_DAY);
     }
 
     public String getName() {
         return name;
     }
 
-    public double getAmount() {
-        return amount;
+    public long getAmount() {
+        return amountCents;
     }
 
     public boolean isExpense() {
         return isExpense;
     }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        name = (String) fields.get("name", null);
+        isExpense = fields.get("isExpense", false);
+        timestamp = fields.get("timestamp", UNDATED);
+        currency = (String) fields.get("currency", null);
+        amountCents = fields.defaulted("amountCents")
+                ? Money.fromDouble(fields.get("amount", 0.0))
+                : fields.get("amountCents", 0L);
+    }
 }
@@ -0,0 +1,198 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+// Filtered reads over a transaction history. Queries scan the store's columns in place and only
+// create Transaction objects for rows they return, so paging through millions of rows takes
+// constant memory. Run them on Wallet.snapshotTransactions() to read without holding the lock.
+//
+//   new TransactionQuery().category("food").expenses().minAmount(Money.parse("10")).page(store, cursor, 20)
+public class TransactionQuery {
+    public enum Order { AMOUNT, DATE }
+
+    // Rows of one page plus the cursor for the next one, or -1 when the history is exhausted.
+    public record Page(List<Transaction> items, int nextCursor) {
+    }
+
+    private String category;
+    private int type; // 0 = both, 1 = expenses, 2 = income
+    private long minAmount = Long.MIN_VALUE;
+    private long maxAmount = Long.MAX_VALUE;
+    private long fromDay = Long.MIN_VALUE;
+    private long toDay = Long.MAX_VALUE;
+    private boolean newestFirst;
+
+    public TransactionQuery category(String category) {
+        this.category = category;
+        return this;
+    }
+
+    public TransactionQuery expenses() {
+        type = 1;
+        return this;
+    }
+
+    public TransactionQuery income() {
+        type = 2;
+        return this;
+    }
+
+    public TransactionQuery minAmount(long amount) {
+        minAmount = amount;
+        return this;
+    }
+
+    public TransactionQuery maxAmount(long amount) {
+        maxAmount = amount;
+        return this;
+    }
+
+    // Undated rows never match a date range.
+    public TransactionQuery between(LocalDate from, LocalDate to) {
+        fromDay = from.toEpochDay();
+        toDay = to.toEpochDay();
+        return this;
+    }
+
+    // Pages and iteration go from the latest entry backwards instead of from the first.
+    public TransactionQuery newestFirst() {
+        newestFirst = true;
+        return this;
+    }
+
+    // Cursor 0 starts a query; pass each page's nextCursor to continue it.
+    public Page page(TransactionStore store, int cursor, int limit) {
+        Scan scan = new Scan(store, cursor);
+        List<Transaction> items = new ArrayList<>(Math.min(limit, 256));
+        while (items.size() < limit && scan.advance()) {
+            items.add(store.get(scan.index));
+        }
+        return new Page(items, scan.advance() ? scan.cursor() : -1);
+    }
+
+    public Iterator<Transaction> iterator(TransactionStore store) {
+        Scan scan = new Scan(store, 0);
+        return new Iterator<>() {
+            private boolean ready;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready) {
+                    ready = scan.advance();
+                }
+                return ready;
+            }
+
+            @Override
+            public Transaction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = false;
+                return store.get(scan.index);
+            }
+        };
+    }
+
+    // The n matching rows that rank highest by amount or by date, highest first. A min-heap of at
+    // most n row indices keeps memory at O(n) whatever the history size, and never beyond the
+    // store's size whatever n is.
+    public List<Transaction> top(TransactionStore store, int n, Order order) {
+        if (n <= 0) {
+            return List.of();
+        }
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(n, store.size()) + 1, (a, b) -> Long.compare(key(store, a, order), key(store, b, order)));
+        Scan scan = new Scan(store, 0);
+        while (scan.advance()) {
+            if (heap.size() < n) {
+                heap.add(scan.index);
+            } else if (key(store, scan.index, order) > key(store, heap.peek(), order)) {
+                heap.poll();
+                heap.add(scan.index);
+            }
+        }
+
+        Transaction[] result = new Transaction[heap.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = store.get(heap.poll());
+        }
+        return List.of(result);
+    }
+
+    private static long key(TransactionStore store, int index, Order order) {
+        return order == Order.AMOUNT ? homeAmount(store, index) : store.getTimestamp(index);
+    }
+
+    // A row's amount in the home currency, so rows in different currencies rank and filter
+    // together; rows in a currency without a rate count at face value.
+    private static long homeAmount(TransactionStore store, int index) {
+        long amount = store.getAmount(index);
+        int currencyId = store.getCurrencyId(index);
+        if (currencyId == 0) {
+            return amount;
+        }
+        double rate = ExchangeRates.current().rate(store.getCurrency(currencyId));
+        return Double.isNaN(rate) ? amount : Math.round(amount * rate);
+    }
+
+    private boolean matches(TransactionStore store, int index, int categoryId) {
+        if (categoryId >= 0 && store.getCategoryId(index) != categoryId) {
+            return false;
+        }
+        if (type != 0 && store.isExpense(index) != (type == 1)) {
+            return false;
+        }
+        long amount = minAmount == Long.MIN_VALUE && maxAmount == Long.MAX_VALUE ? 0 : homeAmount(store, index);
+        if (amount < minAmount || amount > maxAmount) {
+            return false;
+        }
+        if (fromDay != Long.MIN_VALUE || toDay != Long.MAX_VALUE) {
+            long timestamp = store.getTimestamp(index);
+            if (timestamp == Transaction.UNDATED) {
+                return false;
+            }
+            long day = Transaction.dayOf(timestamp);
+            return day >= fromDay && day <= toDay;
+        }
+        return true;
+    }
+
+    // Walks matching row indices from a cursor. Cursors are row positions, so they stay valid
+    // while the store grows: oldest-first they are the next row to look at, newest-first the row
+    // after it, with 0 meaning the current end of the history.
+    private class Scan {
+        private final TransactionStore store;
+        private final int categoryId;
+        private final boolean empty;
+        private int next;
+        private int index = -1;
+
+        Scan(TransactionStore store, int cursor) {
+            this.store = store;
+            this.next = newestFirst ? (cursor == 0 ? store.size() : cursor) - 1 : cursor;
+            this.categoryId = category == null ? -1 : store.find(category);
+            this.empty = category != null && categoryId < 0;
+        }
+
+        boolean advance() {
+            while (!empty && next >= 0 && next < store.size()) {
+                int candidate = newestFirst ? next-- : next++;
+                if (matches(store, candidate, categoryId)) {
+                    index = candidate;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Cursor that resumes at the row the last advance() stopped on.
+        int cursor() {
+            return newestFirst ? index + 1 : index;
+        }
+    }
+}
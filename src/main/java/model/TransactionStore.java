@@ -0,0 +1,325 @@
+package model;
+
+import java.io.*;
+import java.util.*;
+
+// Column-oriented transaction history: one primitive array per field plus a dictionary of
+// category names, instead of one Transaction object per entry. Transaction objects are only
+// created on demand by the read-only views.
+//
+// Currencies are a second, small dictionary. Id 0 is the home currency; the currency column is
+// only allocated once a row in another currency arrives, so single-currency histories pay nothing.
+public class TransactionStore implements Serializable, Iterable<Transaction> {
+    private static final long serialVersionUID = 3L;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_CURRENCIES = 255;
+
+    private transient long[] amounts;
+    private transient long[] timestamps;
+    private transient int[] categoryIds;
+    private transient long[] expenseBits;
+    private transient int size;
+    private transient List<String> names;
+    private transient Map<String, Integer> ids;
+    // Codes of currency ids 1..n, and each row's currency id as an unsigned byte (null: all 0).
+    private transient List<String> currencies;
+    private transient byte[] currencyIds;
+
+    public TransactionStore() {
+        init(INITIAL_CAPACITY);
+    }
+
+    private void init(int capacity) {
+        amounts = new long[capacity];
+        timestamps = new long[capacity];
+        categoryIds = new int[capacity];
+        expenseBits = new long[(capacity + 63) >>> 6];
+        size = 0;
+        names = new ArrayList<>();
+        ids = new HashMap<>();
+        currencies = new ArrayList<>();
+        currencyIds = null;
+    }
+
+    public void add(Transaction transaction) {
+        add(intern(transaction.getName()), internCurrency(transaction.getCurrency()), transaction.getAmount(),
+                transaction.isExpense(), transaction.getTimestamp());
+    }
+
+    public void add(String categoryName, long amount, boolean isExpense, long timestamp) {
+        add(intern(categoryName), amount, isExpense, timestamp);
+    }
+
+    // Appends by dictionary id, with no string hashing; the id must come from intern().
+    public void add(int categoryId, long amount, boolean isExpense, long timestamp) {
+        ensureCapacity(size + 1);
+        amounts[size] = amount;
+        timestamps[size] = timestamp;
+        categoryIds[size] = Objects.checkIndex(categoryId, names.size());
+        if (isExpense) {
+            expenseBits[size >>> 6] |= 1L << size;
+        }
+        size++;
+    }
+
+    // Appends a row in the currency with the given id, which must come from internCurrency().
+    public void add(int categoryId, int currencyId, long amount, boolean isExpense, long timestamp) {
+        Objects.checkIndex(currencyId, currencies.size() + 1);
+        if (currencyId != 0 && currencyIds == null) {
+            currencyIds = new byte[amounts.length];
+        }
+        add(categoryId, amount, isExpense, timestamp);
+        if (currencyIds != null) {
+            currencyIds[size - 1] = (byte) currencyId;
+        }
+    }
+
+    // The id of a currency code, adding it if needed; 0 for null, the home currency.
+    public int internCurrency(String code) {
+        if (code == null) {
+            return 0;
+        }
+        int id = currencies.indexOf(code);
+        if (id >= 0) {
+            return id + 1;
+        }
+        if (currencies.size() == MAX_CURRENCIES) {
+            throw new IllegalStateException("Too many currencies in one history");
+        }
+        currencies.add(code);
+        return currencies.size();
+    }
+
+    // The id of a category name in this store's dictionary, or -1 if it has none yet.
+    public int find(String categoryName) {
+        Integer id = ids.get(categoryName);
+        return id == null ? -1 : id;
+    }
+
+    // The id of a category name, adding it to the dictionary if needed. The dictionary keeps the
+    // first String instance it sees, so getCategoryName returns one shared copy per name.
+    public int intern(String categoryName) {
+        Integer id = ids.get(categoryName);
+        if (id == null) {
+            id = names.size();
+            names.add(categoryName);
+            ids.put(categoryName, id);
+        }
+        return id;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > amounts.length) {
+            int newCapacity = Math.max(capacity, amounts.length + (amounts.length >> 1));
+            amounts = Arrays.copyOf(amounts, newCapacity);
+            timestamps = Arrays.copyOf(timestamps, newCapacity);
+            categoryIds = Arrays.copyOf(categoryIds, newCapacity);
+            expenseBits = Arrays.copyOf(expenseBits, (newCapacity + 63) >>> 6);
+            if (currencyIds != null) {
+                currencyIds = Arrays.copyOf(currencyIds, newCapacity);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getAmount(int index) {
+        return amounts[Objects.checkIndex(index, size)];
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[Objects.checkIndex(index, size)];
+    }
+
+    public int getCategoryId(int index) {
+        return categoryIds[Objects.checkIndex(index, size)];
+    }
+
+    public int getCategoryCount() {
+        return names.size();
+    }
+
+    public String getCategoryName(int categoryId) {
+        return names.get(categoryId);
+    }
+
+    public int getCurrencyId(int index) {
+        Objects.checkIndex(index, size);
+        return currencyIds == null ? 0 : currencyIds[index] & 0xFF;
+    }
+
+    // Currency ids run from 0 (home) to getCurrencyCount() inclusive.
+    public int getCurrencyCount() {
+        return currencies.size();
+    }
+
+    // The code of a currency id, or null for the home currency.
+    public String getCurrency(int currencyId) {
+        return currencyId == 0 ? null : currencies.get(currencyId - 1);
+    }
+
+    public boolean isExpense(int index) {
+        Objects.checkIndex(index, size);
+        return (expenseBits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public Transaction get(int index) {
+        return new Transaction(getCategoryName(getCategoryId(index)), getAmount(index), isExpense(index), getTimestamp(index),
+                getCurrency(getCurrencyId(index)));
+    }
+
+    // A read-only view of the first size() entries that shares the column arrays. Appends only
+    // write past the snapshot's size or into freshly grown arrays, so the snapshot stays valid
+    // without copying the history; it is meant for serializing outside the wallet lock.
+    TransactionStore snapshot() {
+        return new TransactionStore(this);
+    }
+
+    private TransactionStore(TransactionStore source) {
+        amounts = source.amounts;
+        timestamps = source.timestamps;
+        categoryIds = source.categoryIds;
+        expenseBits = source.expenseBits;
+        size = source.size;
+        names = List.copyOf(source.names);
+        ids = Map.copyOf(source.ids);
+        currencies = List.copyOf(source.currencies);
+        currencyIds = source.currencyIds;
+    }
+
+    public List<Transaction> asList() {
+        return new AbstractList<>() {
+            @Override
+            public Transaction get(int index) {
+                return TransactionStore.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Transaction> iterator() {
+        return asList().iterator();
+    }
+
+    // Snapshot form (see SnapshotCodec): the name dictionary, then one column at a time, category
+    // ids and amounts as varints, timestamps as deltas from the previous row, and the expense bits.
+    // Histories with other currencies end with the currency dictionary and column; the section
+    // is absent otherwise, as in snapshots written before currencies existed.
+    void encode(SnapshotCodec.Output out) {
+        out.unsigned(names.size());
+        for (String name : names) {
+            out.string(name);
+        }
+        out.unsigned(size);
+        for (int i = 0; i < size; i++) {
+            out.unsigned(categoryIds[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            out.signed(amounts[i]);
+        }
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            out.signed(timestamps[i] - previous);
+            previous = timestamps[i];
+        }
+        for (int i = 0; i < size >>> 6; i++) {
+            out.fixed64(expenseBits[i]);
+        }
+        if ((size & 63) != 0) {
+            out.fixed64(expenseBits[size >>> 6] & ((1L << size) - 1));
+        }
+        if (currencyIds != null) {
+            out.unsigned(currencies.size());
+            for (String code : currencies) {
+                out.string(code);
+            }
+            out.bytes(currencyIds, 0, size);
+        }
+    }
+
+    static TransactionStore decode(SnapshotCodec.Input in) {
+        TransactionStore store = new TransactionStore();
+        int nameCount = in.count();
+        for (int i = 0; i < nameCount; i++) {
+            store.intern(in.string());
+        }
+        int count = in.count();
+        store.ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            store.categoryIds[i] = Objects.checkIndex((int) in.unsigned(), nameCount);
+        }
+        for (int i = 0; i < count; i++) {
+            store.amounts[i] = in.signed();
+        }
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += in.signed();
+            store.timestamps[i] = previous;
+        }
+        for (int i = 0; i < (count + 63) >>> 6; i++) {
+            store.expenseBits[i] = in.fixed64();
+        }
+        if (in.hasRemaining()) {
+            int currencyCount = in.count();
+            for (int i = 0; i < currencyCount; i++) {
+                store.internCurrency(in.string());
+            }
+            store.currencyIds = new byte[store.amounts.length];
+            for (int i = 0; i < count; i++) {
+                store.currencyIds[i] = (byte) Objects.checkIndex(in.u8(), currencyCount + 1);
+            }
+        }
+        store.size = count;
+        return store;
+    }
+
+    // The Java serialized form predates currencies and is only kept to read old data; use the
+    // snapshot form for histories with other currencies.
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(amounts[i]);
+            out.writeLong(timestamps[i]);
+            out.writeInt(categoryIds[i]);
+        }
+        for (int i = 0; i < size >>> 6; i++) {
+            out.writeLong(expenseBits[i]);
+        }
+        // Bits past size in the last word may belong to appends made after a snapshot was taken.
+        if ((size & 63) != 0) {
+            out.writeLong(expenseBits[size >>> 6] & ((1L << size) - 1));
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int nameCount = in.readInt();
+        init(INITIAL_CAPACITY);
+        for (int i = 0; i < nameCount; i++) {
+            intern(in.readUTF());
+        }
+        int count = in.readInt();
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            amounts[i] = in.readLong();
+            timestamps[i] = in.readLong();
+            categoryIds[i] = in.readInt();
+        }
+        for (int i = 0; i < (count + 63) >>> 6; i++) {
+            expenseBits[i] = in.readLong();
+        }
+        size = count;
+    }
+}
@@ -1,28 +1,66 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+public final class User implements Serializable, AlertListener {
+    private static final long serialVersionUID = -7225974034665363134L;
 
-public class User implements Serializable {
     private String username;
     private String password;
     private Wallet wallet;
-    private List<String> notifications;
-    private String curNotification;
+    private NotificationLog notificationLog;
 
     public User(String username, String password) {
         this.username = username;
         this.password = password;
         this.wallet = new Wallet();
-        this.notifications = new ArrayList<>();
-        this.curNotification = null;
+        this.notificationLog = new NotificationLog(NotificationLog.DEFAULT_CAPACITY);
+        wallet.setAlertListener(this);
+    }
+
+    private User(String username, String password, Wallet wallet, NotificationLog notificationLog) {
+        this.username = username;
+        this.password = password;
+        this.wallet = wallet;
+        this.notificationLog = notificationLog;
+        wallet.setAlertListener(this);
+    }
+
+    private User(User source) {
+        this.username = source.username;
+        this.password = source.password;
+        this.wallet = new Wallet(source.wallet);
+        this.notificationLog = source.notificationLog.copy();
+    }
+
+    // Detached copy for writing to disk while the live user keeps changing. Takes the wallet lock
+    // before this user's monitor, the same order as alerts raised inside a wallet change.
+    public User snapshot() {
+        Lock lock = wallet.readLock();
+        lock.lock();
+        try {
+            synchronized (this) {
+                return new User(this);
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     public String getUsername() {
         return username;
     }
 
+    public String getPassword() {
+        return password;
+    }
+
     public boolean authenticate(String password) {
         return this.password.equals(password);
     }
@@ -31,20 +69,69 @@ public class User implements Serializable {
         return wallet;
     }
 
-    public void addNotification(String notification) {
-        curNotification = notification;
+    @Override
+    public void alert(String message) {
+        addNotification(message);
+    }
+
+    public synchronized void addNotification(String notification) {
+        notificationLog.add(notification, System.currentTimeMillis());
     }
 
-    public List<String> getNotifications() {
-        return notifications;
+    // Newest first; see NotificationLog.page.
+    public synchronized List<NotificationLog.Notification> getNotifications(int page, int pageSize) {
+        return notificationLog.page(page, pageSize);
+    }
+
+    // Returns every notification not yet shown, oldest first, and marks them as read.
+    public synchronized List<String> drainNotifications() {
+        List<String> messages = new ArrayList<>();
+        for (NotificationLog.Notification notification : notificationLog.drainUnread()) {
+            messages.add(notification.toString());
+        }
+        return messages;
     }
 
-    public String getLastNotification() {
-        if (curNotification != null) {
-            notifications.add(curNotification);
+    // Snapshot form, see SnapshotCodec. Call on a snapshot() copy if the user is in use.
+    void encode(SnapshotCodec.Output out) {
+        out.string(username);
+        out.string(password);
+        notificationLog.encode(out);
+        wallet.encode(out);
+    }
+
+    static User decode(SnapshotCodec.Input in) throws IOException {
+        String username = in.string();
+        String password = in.string();
+        NotificationLog notificationLog = NotificationLog.decode(in);
+        return new User(username, password, Wallet.decode(in), notificationLog);
+    }
+
+    // Users saved before the bounded log kept every notification in a list, plus at most one
+    // unread one in curNotification.
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        username = (String) fields.get("username", null);
+        password = (String) fields.get("password", null);
+        wallet = (Wallet) fields.get("wallet", null);
+        notificationLog = (NotificationLog) fields.get("notificationLog", null);
+
+        if (notificationLog == null) {
+            notificationLog = new NotificationLog(NotificationLog.DEFAULT_CAPACITY);
+            ObjectStreamClass stream = fields.getObjectStreamClass();
+            List<String> history = stream.getField("notifications") != null ? (List<String>) fields.get("notifications", null) : null;
+            if (history != null) {
+                for (String message : history) {
+                    notificationLog.add(message, 0);
+                }
+                notificationLog.drainUnread();
+            }
+            String unread = stream.getField("curNotification") != null ? (String) fields.get("curNotification", null) : null;
+            if (unread != null) {
+                notificationLog.add(unread, 0);
+            }
         }
-        String tmp = curNotification;
-        curNotification = null;
-        return tmp;
+        wallet.setAlertListener(this);
     }
 }
@@ -1,24 +1,261 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 public class Wallet implements Serializable {
-    private List<Transaction> transactions;
+    private static final long serialVersionUID = 4672990797086783673L;
+    private static final int BUDGET_WARNING_PERCENT = 80;
+    private static final Metrics.Timer ADD_TRANSACTION = Metrics.timer("wallet.addTransaction");
+    private static final Metrics.Timer ADD_BATCH = Metrics.timer("wallet.addTransactions");
+
+    private TransactionStore history;
     private Map<String, Category> categories;
-    private double totalBalance;
+    private long balanceCents;
+    private long journalSeq;
+    private long balanceFloorCents;
+    private ArrayList<RecurringTransaction> recurring;
+    private int nextRecurringId;
+    private transient long totalIncome;
+    private transient long totalExpenses;
+    private transient List<IncomeCategory> incomeCategories;
+    private transient List<ExpenseCategory> expenseCategories;
+    private transient DayIndex incomeByDay;
+    private transient DayIndex expensesByDay;
+    private transient WalletListener listener;
+    private transient AlertListener alerts;
+    // Categories indexed by their id in the history's name dictionary, the wallet's symbol table.
+    private transient List<Category> categoriesById;
+    private transient ReentrantReadWriteLock lock;
+    private transient volatile long version;
+    private transient volatile long savedVersion;
+    // Set when the listener could not record a change, with the version that change made; see
+    // notifyListener. Guarded by the write lock.
+    private transient UncheckedIOException failure;
+    private transient long failedVersion;
+    // Sums of the transactions in other currencies by currency id (see TransactionStore), null
+    // while the wallet has none; the plain totals and day indexes above hold the home currency.
+    // Reports convert them at the current rates, caching the converted totals until the rates
+    // or the wallet change, so a report costs O(currencies) rather than O(transactions).
+    private transient long[] foreignIncome;
+    private transient long[] foreignExpenses;
+    private transient long[] foreignBalance;
+    private transient DayIndex[] foreignIncomeByDay;
+    private transient DayIndex[] foreignExpensesByDay;
+    private transient volatile Converted converted;
+
+    // The excluded fields name the currencies without a rate that each total leaves out, or are null.
+    private record Converted(long ratesVersion, long walletVersion, long income, long expenses, long balance,
+                             String incomeExcluded, String expensesExcluded, String balanceExcluded) {
+    }
 
     public Wallet() {
-        transactions = new ArrayList<>();
-        categories = new HashMap<>();
-        totalBalance = 0;
+        history = new TransactionStore();
+        categories = new LinkedHashMap<>();
+        balanceCents = 0;
+        incomeCategories = new ArrayList<>();
+        expenseCategories = new ArrayList<>();
+        incomeByDay = new DayIndex();
+        expensesByDay = new DayIndex();
+        categoriesById = new ArrayList<>();
+        recurring = new ArrayList<>();
+        lock = new ReentrantReadWriteLock();
+        version = 1;
+    }
+
+    // Copy of the persistent state that can be serialized after the lock is released. The
+    // history is shared rather than copied, so this costs O(categories), not O(transactions).
+    Wallet(Wallet source) {
+        source.lock.readLock().lock();
+        try {
+            history = source.history.snapshot();
+            categories = new LinkedHashMap<>();
+            for (Category category : source.categories.values()) {
+                categories.put(category.getName(), category.copy());
+            }
+            balanceCents = source.balanceCents;
+            journalSeq = source.journalSeq;
+            balanceFloorCents = source.balanceFloorCents;
+            recurring = new ArrayList<>(source.recurring.size());
+            for (RecurringTransaction definition : source.recurring) {
+                recurring.add(definition.copy());
+            }
+            nextRecurringId = source.nextRecurringId;
+            categoriesById = new ArrayList<>();
+            lock = new ReentrantReadWriteLock();
+        } finally {
+            source.lock.readLock().unlock();
+        }
+    }
+
+    public void setListener(WalletListener listener) {
+        lock.writeLock().lock();
+        try {
+            this.listener = listener;
+            for (Category category : categories.values()) {
+                category.wallet = this;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setAlertListener(AlertListener alerts) {
+        lock.writeLock().lock();
+        try {
+            this.alerts = alerts;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Readers that need several calls to see one consistent state (e.g. a snapshot for saving)
+    // hold this lock around them; every mutation takes the write lock.
+    public Lock readLock() {
+        return lock.readLock();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isDirty() {
+        return version != savedVersion;
+    }
+
+    // Records that the state as of the given version is on disk; later changes keep the wallet dirty.
+    public void markSaved(long savedVersion) {
+        this.savedVersion = savedVersion;
+    }
+
+    // Called once the saved state is committed to the store: a change the listener failed to
+    // record is then durable after all, and the wallet takes changes again.
+    public void clearFailure() {
+        lock.writeLock().lock();
+        try {
+            if (failure != null && savedVersion >= failedVersion) {
+                failure = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Reports an applied change to the listener. If it cannot record the change (the journal
+    // write failed), the change stays in memory but the wallet refuses further ones until it is
+    // saved, so no journal record builds on one that is missing. The failure reaches the caller.
+    private void notifyListener(Consumer<WalletListener> event) {
+        if (listener == null) {
+            return;
+        }
+        try {
+            event.accept(listener);
+        } catch (UncheckedIOException e) {
+            failure = e;
+            failedVersion = version;
+            throw e;
+        }
+    }
+
+    private void checkWritable() {
+        if (failure != null) {
+            throw new UncheckedIOException("an earlier change could not be recorded (" + failure.getMessage()
+                    + "), no changes are accepted until the wallet is saved", failure.getCause());
+        }
+    }
+
+    public long getJournalSeq() {
+        lock.readLock().lock();
+        try {
+            return journalSeq;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void setJournalSeq(long journalSeq) {
+        this.journalSeq = journalSeq;
+    }
+
+    public long getBalanceFloor() {
+        lock.readLock().lock();
+        try {
+            return balanceFloorCents;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // A balance alert fires when the balance drops below this floor; 0 means only the below-zero alert.
+    public void setBalanceFloor(long floor) {
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            balanceFloorCents = floor;
+            version++;
+            notifyListener(l -> l.balanceFloorChanged(floor));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long getTotalBalanceRaw() {
+        lock.readLock().lock();
+        try {
+            return balance();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getTotalIncomeRaw() {
+        lock.readLock().lock();
+        try {
+            return foreignBalance == null ? totalIncome : converted().income();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getTotalExpensesRaw() {
+        lock.readLock().lock();
+        try {
+            return foreignBalance == null ? totalExpenses : converted().expenses();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<IncomeCategory> getIncomeCategories() {
+        lock.readLock().lock();
+        try {
+            return List.copyOf(incomeCategories);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
-    public double getTotalBalanceRaw() {
-        return totalBalance;
+    public List<ExpenseCategory> getExpenseCategories() {
+        lock.readLock().lock();
+        try {
+            return List.copyOf(expenseCategories);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public class CategoryNotFoundException extends Exception {
@@ -34,128 +271,1052 @@ public class Wallet implements Serializable {
     }
 
     public void addTransaction(Transaction transaction) throws CategoryNotFoundException {
-        String categoryName = transaction.getName();
-        Category category = categories.get(categoryName);
+        long started = Metrics.start();
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            int categoryId = history.find(transaction.getName());
+            Category category = categoryOf(categoryId);
+
+            if (category == null) {
+                throw new CategoryNotFoundException("Category not found: " + transaction.getName());
+            }
 
-        if (category == null) {
-            throw new CategoryNotFoundException("Category not found: " + categoryName);
+            apply(category, categoryId, history.internCurrency(transaction.getCurrency()), transaction.getAmount(),
+                    transaction.isExpense(), transaction.getTimestamp());
+        } finally {
+            lock.writeLock().unlock();
+            ADD_TRANSACTION.stop(started);
         }
+    }
+
+    // The id of a category for the id-based addTransaction, or -1 if the wallet has no such
+    // category. Ids stay valid for the life of the wallet object.
+    public int getCategoryId(String categoryName) {
+        lock.readLock().lock();
+        try {
+            int categoryId = history.find(categoryName);
+            return categoryOf(categoryId) == null ? -1 : categoryId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Hot path for callers that resolved the category once: no name hashing per transaction.
+    public void addTransaction(int categoryId, long amount, boolean isExpense, long timestamp) throws CategoryNotFoundException {
+        long started = Metrics.start();
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            Category category = categoryOf(categoryId);
+            if (category == null) {
+                throw new CategoryNotFoundException("Category not found: #" + categoryId);
+            }
+            apply(category, categoryId, 0, amount, isExpense, timestamp);
+        } finally {
+            lock.writeLock().unlock();
+            ADD_TRANSACTION.stop(started);
+        }
+    }
 
-        category.addAmount(transaction.getAmount());
+    private Category categoryOf(int categoryId) {
+        return categoryId >= 0 && categoryId < categoriesById.size() ? categoriesById.get(categoryId) : null;
+    }
 
-        if (transaction.isExpense()) {
-            totalBalance -= transaction.getAmount();
+    private void apply(Category category, int categoryId, int currencyId, long amount, boolean isExpense, long timestamp) {
+        int budgetLevel = budgetLevel(category);
+        long previousBalance = balance();
+        if (currencyId != 0) {
+            addForeign(category, currencyId, amount, isExpense, timestamp, false);
         } else {
-            totalBalance += transaction.getAmount();
+            category.addAmount(amount);
+            if (category instanceof ExpenseCategory) {
+                totalExpenses += amount;
+            } else {
+                totalIncome += amount;
+            }
+            indexByDay(category, amount, timestamp);
+
+            if (isExpense) {
+                balanceCents -= amount;
+            } else {
+                balanceCents += amount;
+            }
+        }
+
+        history.add(categoryId, currencyId, amount, isExpense, timestamp);
+        version++;
+
+        notifyListener(l -> l.transactionAdded(new Transaction(category.getName(), amount, isExpense, timestamp, history.getCurrency(currencyId))));
+        checkBudgetCrossing(category, budgetLevel);
+        checkBalanceCrossing(previousBalance);
+    }
+
+    // Alerts compare the state before and after a single change, so each threshold fires once
+    // per crossing in O(1), without rescanning categories or polling the balance.
+    private static int budgetLevel(Category category) {
+        if (!(category instanceof ExpenseCategory expense) || expense.getBudget() <= 0) {
+            return 0;
+        }
+        if (expense.getCurrentAmount() > expense.getBudget()) {
+            return 2;
+        }
+        return expense.getCurrentAmount() * 100 >= expense.getBudget() * BUDGET_WARNING_PERCENT ? 1 : 0;
+    }
+
+    private void checkBudgetCrossing(Category category, int previousLevel) {
+        int level = budgetLevel(category);
+        if (alerts == null || level <= previousLevel) {
+            return;
+        }
+        if (level == 2) {
+            alerts.alert("Expense exceeds budget for category: " + category.getName());
+        } else {
+            alerts.alert("Expenses reached " + BUDGET_WARNING_PERCENT + "% of budget for category: " + category.getName());
+        }
+    }
+
+    private void checkBalanceCrossing(long previousBalance) {
+        if (alerts == null) {
+            return;
+        }
+        long balance = balance();
+        if (previousBalance >= 0 && balance < 0) {
+            alerts.alert("Warning: Your total balance is negative.");
+        }
+        if (balanceFloorCents != 0 && previousBalance >= balanceFloorCents && balance < balanceFloorCents) {
+            alerts.alert("Warning: Your total balance fell below " + Money.format(balanceFloorCents) + ".");
+        }
+    }
+
+    // Applies a whole batch under one lock acquisition. Categories the batch names but the wallet
+    // lacks are created first, typed after the first row that uses them; rows whose type does not
+    // match their category are skipped and returned.
+    public BitSet addTransactions(TransactionStore batch) {
+        long started = Metrics.start();
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            return applyBatch(batch, true);
+        } finally {
+            lock.writeLock().unlock();
+            ADD_BATCH.stop(started);
+        }
+    }
+
+    // Rows go into the history and day indexes one by one, but each category's total, the wallet
+    // totals and the budget alerts are updated once per category, and the balance alerts once,
+    // so a batch costs one aggregate update per category rather than one per row. A row the
+    // listener fails to record ends the notifications, but the batch is still applied in full so
+    // the totals match the history, and the failure is thrown at the end.
+    private BitSet applyBatch(TransactionStore batch, boolean notify) {
+        // Translate the batch's dictionary ids to wallet ids once per distinct name.
+        int[] walletIds = new int[batch.getCategoryCount()];
+        Arrays.fill(walletIds, -1);
+        for (int i = 0; i < batch.size(); i++) {
+            int id = batch.getCategoryId(i);
+            if (walletIds[id] < 0) {
+                String name = batch.getCategoryName(id);
+                walletIds[id] = history.find(name);
+                if (categoryOf(walletIds[id]) == null) {
+                    addCategory(batch.isExpense(i) ? new ExpenseCategory(name, 0) : new IncomeCategory(name));
+                    walletIds[id] = history.find(name);
+                }
+            }
+        }
+
+        int[] currencyIds = new int[batch.getCurrencyCount() + 1];
+        for (int id = 1; id < currencyIds.length; id++) {
+            currencyIds[id] = history.internCurrency(batch.getCurrency(id));
+        }
+
+        // Rows in other currencies go straight into the foreign sums, so budget levels are taken
+        // when a category is first touched, before any of its rows are applied.
+        BitSet rejected = new BitSet();
+        BitSet touched = new BitSet();
+        long[] sums = new long[categoriesById.size()];
+        int[] budgetLevels = new int[categoriesById.size()];
+        long previousBalance = balance();
+        UncheckedIOException failed = null;
+        for (int i = 0; i < batch.size(); i++) {
+            int categoryId = walletIds[batch.getCategoryId(i)];
+            Category category = categoriesById.get(categoryId);
+            int currencyId = currencyIds[batch.getCurrencyId(i)];
+            long amount = batch.getAmount(i);
+            boolean isExpense = batch.isExpense(i);
+            long timestamp = batch.getTimestamp(i);
+            if (isExpense != category instanceof ExpenseCategory) {
+                rejected.set(i);
+                continue;
+            }
+
+            if (!touched.get(categoryId)) {
+                touched.set(categoryId);
+                budgetLevels[categoryId] = budgetLevel(category);
+            }
+            if (currencyId != 0) {
+                addForeign(category, currencyId, amount, isExpense, timestamp, false);
+            } else {
+                sums[categoryId] += amount;
+                indexByDay(category, amount, timestamp);
+                balanceCents += isExpense ? -amount : amount;
+            }
+            history.add(categoryId, currencyId, amount, isExpense, timestamp);
+            // Bumped before the journal record is written, as in apply(), so a checkpoint that
+            // sees the record also sees the wallet as dirty.
+            version++;
+            if (notify && listener != null && failed == null) {
+                try {
+                    listener.transactionAdded(new Transaction(category.getName(), amount, isExpense, timestamp, history.getCurrency(currencyId)));
+                } catch (UncheckedIOException e) {
+                    failed = e;
+                }
+            }
+        }
+
+        for (int categoryId = touched.nextSetBit(0); categoryId >= 0; categoryId = touched.nextSetBit(categoryId + 1)) {
+            Category category = categoriesById.get(categoryId);
+            category.addAmount(sums[categoryId]);
+            if (category instanceof ExpenseCategory) {
+                totalExpenses += sums[categoryId];
+            } else {
+                totalIncome += sums[categoryId];
+            }
+            checkBudgetCrossing(category, budgetLevels[categoryId]);
+        }
+        if (!touched.isEmpty()) {
+            // The category totals moved after the last row's bump.
+            version++;
+        }
+        checkBalanceCrossing(previousBalance);
+        if (failed != null) {
+            failure = failed;
+            failedVersion = version;
+            throw failed;
+        }
+        return rejected;
+    }
+
+    // Adds a recurring definition and gives it an id, creating its category if there is none.
+    // Occurrences that are already due are only booked by the next applyRecurring.
+    public RecurringTransaction addRecurring(RecurringTransaction definition) throws InvalidCategoryTypeException {
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            String name = definition.getCategory();
+            Category category = categories.get(name);
+            if (category == null) {
+                addCategory(definition.isExpense() ? new ExpenseCategory(name, 0) : new IncomeCategory(name));
+            } else if (definition.isExpense() != category instanceof ExpenseCategory) {
+                throw new InvalidCategoryTypeException("Category " + name + " is not an " + (definition.isExpense() ? "expense" : "income") + " category.");
+            }
+
+            definition.setId(nextRecurringId++);
+            recurring.add(definition);
+            version++;
+            notifyListener(l -> l.recurringAdded(definition));
+            return definition;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean removeRecurring(int id) {
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            RecurringTransaction definition = findRecurring(id);
+            if (definition == null) {
+                return false;
+            }
+            recurring.remove(definition);
+            version++;
+            notifyListener(l -> l.recurringRemoved(definition));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<RecurringTransaction> getRecurring() {
+        lock.readLock().lock();
+        try {
+            List<RecurringTransaction> copies = new ArrayList<>(recurring.size());
+            for (RecurringTransaction definition : recurring) {
+                copies.add(definition.copy());
+            }
+            return copies;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Epoch day of the earliest pending occurrence, or Long.MAX_VALUE if nothing recurs.
+    public long getNextRecurringDay() {
+        lock.readLock().lock();
+        try {
+            long next = Long.MAX_VALUE;
+            for (RecurringTransaction definition : recurring) {
+                next = Math.min(next, definition.nextDueDay());
+            }
+            return next;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Books every occurrence due on or before the given epoch day, however many periods were
+    // missed, as one batch. Each advanced definition is reported to the listener once with its
+    // new occurrence count, which is enough to regenerate the same rows on replay. Returns the
+    // number of transactions added.
+    public int applyRecurring(long throughDay) {
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            TransactionStore batch = new TransactionStore();
+            List<RecurringTransaction> advanced = new ArrayList<>();
+            for (RecurringTransaction definition : recurring) {
+                int occurrences = definition.getOccurrences();
+                while (definition.dueDay(occurrences) <= throughDay) {
+                    occurrences++;
+                }
+                if (occurrences > definition.getOccurrences()) {
+                    addOccurrences(batch, definition, occurrences);
+                    advanced.add(definition);
+                }
+            }
+            if (batch.size() == 0) {
+                return 0;
+            }
+
+            applyBatch(batch, false);
+            for (RecurringTransaction definition : advanced) {
+                notifyListener(l -> l.recurringApplied(definition));
+            }
+            return batch.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Replays a recurringApplied record: books the occurrences of one definition up to the count.
+    public void applyRecurring(int id, int occurrences) {
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            RecurringTransaction definition = findRecurring(id);
+            if (definition == null || occurrences <= definition.getOccurrences()) {
+                return;
+            }
+            TransactionStore batch = new TransactionStore();
+            addOccurrences(batch, definition, occurrences);
+            applyBatch(batch, false);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private RecurringTransaction findRecurring(int id) {
+        for (RecurringTransaction definition : recurring) {
+            if (definition.getId() == id) {
+                return definition;
+            }
+        }
+        return null;
+    }
+
+    private static void addOccurrences(TransactionStore batch, RecurringTransaction definition, int occurrences) {
+        int categoryId = batch.intern(definition.getCategory());
+        for (int n = definition.getOccurrences(); n < occurrences; n++) {
+            long timestamp = Transaction.timestampOf(LocalDate.ofEpochDay(definition.dueDay(n)));
+            batch.add(categoryId, definition.getAmount(), definition.isExpense(), timestamp);
+        }
+        definition.setOccurrences(occurrences);
+    }
+
+    // Adds the transaction, first creating a category of the matching type if there is none.
+    // Returns false without changing anything if the category exists with the other type.
+    public boolean addTransactionCreatingCategory(Transaction transaction) {
+        long started = Metrics.start();
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            int categoryId = history.find(transaction.getName());
+            Category category = categoryOf(categoryId);
+            if (category == null) {
+                category = transaction.isExpense()
+                        ? new ExpenseCategory(transaction.getName(), 0)
+                        : new IncomeCategory(transaction.getName());
+                addCategory(category);
+                categoryId = history.find(transaction.getName());
+            } else if (transaction.isExpense() != category instanceof ExpenseCategory) {
+                return false;
+            }
+            apply(category, categoryId, history.internCurrency(transaction.getCurrency()), transaction.getAmount(),
+                    transaction.isExpense(), transaction.getTimestamp());
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+            ADD_TRANSACTION.stop(started);
+        }
+    }
+
+    // The view reads the live store; iterate it while holding readLock().
+    public List<Transaction> getTransactions() {
+        return history.asList();
+    }
+
+    public TransactionStore getTransactionStore() {
+        return history;
+    }
+
+    // The history as of now, readable without the lock while the wallet keeps changing.
+    public TransactionStore snapshotTransactions() {
+        lock.readLock().lock();
+        try {
+            return history.snapshot();
+        } finally {
+            lock.readLock().unlock();
         }
+    }
 
-        transactions.add(transaction);
+    public WalletSummary getSummary() {
+        lock.readLock().lock();
+        try {
+            List<CategorySummary> summaries = new ArrayList<>(incomeCategories.size() + expenseCategories.size());
+            for (IncomeCategory category : incomeCategories) {
+                summaries.add(new CategorySummary(category.getName(), false, category.getCurrentAmount(), 0));
+            }
+            for (ExpenseCategory category : expenseCategories) {
+                summaries.add(new CategorySummary(category.getName(), true, category.getCurrentAmount(), category.getBudget()));
+            }
+            if (foreignBalance == null) {
+                return new WalletSummary(totalIncome, totalExpenses, balanceCents, summaries);
+            }
+            Converted totals = converted();
+            return new WalletSummary(totals.income(), totals.expenses(), totals.balance(), summaries);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public void addCategory(Category category) {
-        categories.put(category.getName(), category);
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            category.wallet = this;
+            register(category);
+            Category replaced = categories.put(category.getName(), category);
+            if (replaced != null) {
+                unindex(replaced);
+            }
+            index(category, replaced != null);
+            version++;
+
+            notifyListener(l -> l.categoryAdded(category));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Gives the category an id in the dictionary and makes it share the dictionary's name string.
+    private void register(Category category) {
+        int categoryId = history.intern(category.getName());
+        category.name = history.getCategoryName(categoryId);
+        category.wallet = this;
+        while (categoriesById.size() <= categoryId) {
+            categoriesById.add(null);
+        }
+        categoriesById.set(categoryId, category);
+    }
+
+    private void indexByDay(Category category, long amount, long timestamp) {
+        if (timestamp == Transaction.UNDATED) {
+            return;
+        }
+        long day = Transaction.dayOf(timestamp);
+        category.days.add(day, amount);
+        (category instanceof ExpenseCategory ? expensesByDay : incomeByDay).add(day, amount);
+    }
+
+    // A replacement takes the place its name already has in categories, so the per-type lists
+    // keep the map's insertion order.
+    private void index(Category category, boolean replacement) {
+        if (category instanceof ExpenseCategory expenseCategory) {
+            expenseCategories.add(replacement ? positionOf(category) : expenseCategories.size(), expenseCategory);
+            totalExpenses += category.currentCents;
+        } else if (category instanceof IncomeCategory incomeCategory) {
+            incomeCategories.add(replacement ? positionOf(category) : incomeCategories.size(), incomeCategory);
+            totalIncome += category.currentCents;
+        }
+    }
+
+    // How many categories of the same type precede this one in categories.
+    private int positionOf(Category category) {
+        boolean expense = category instanceof ExpenseCategory;
+        int position = 0;
+        for (Category other : categories.values()) {
+            if (other == category) {
+                break;
+            }
+            if (other instanceof ExpenseCategory == expense) {
+                position++;
+            }
+        }
+        return position;
+    }
+
+    private void unindex(Category category) {
+        long[] foreignTotals;
+        if (category instanceof ExpenseCategory) {
+            expenseCategories.remove(category);
+            totalExpenses -= category.currentCents;
+            foreignTotals = foreignExpenses;
+        } else {
+            incomeCategories.remove(category);
+            totalIncome -= category.currentCents;
+            foreignTotals = foreignIncome;
+        }
+        if (category.foreignCents != null) {
+            for (int id = 1; id < category.foreignCents.length; id++) {
+                foreignTotals[id] -= category.foreignCents[id];
+            }
+        }
+    }
+
+    // Sets the budget of an expense category, creating the category if there is none. Lookup and
+    // insert happen under one write lock, so two sessions cannot both create the category and
+    // have one replace the other along with its amounts. Returns true if it was created.
+    public boolean setBudgetCreating(String categoryName, long budget) throws InvalidCategoryTypeException {
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            Category category = categories.get(categoryName);
+            if (category == null) {
+                addCategory(new ExpenseCategory(categoryName, budget));
+                return true;
+            }
+            if (!(category instanceof ExpenseCategory expense)) {
+                throw new InvalidCategoryTypeException("Category is not an expense category: " + categoryName);
+            }
+            changeBudget(expense, budget);
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void changeBudget(ExpenseCategory category, long budget) {
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            int budgetLevel = budgetLevel(category);
+            category.applyBudget(budget);
+            version++;
+            notifyListener(l -> l.budgetChanged(category));
+            checkBudgetCrossing(category, budgetLevel);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public Category getCategoryByName(String categoryName) throws CategoryNotFoundException {
-        Category category = categories.get(categoryName);
-        if (category == null) {
-            throw new CategoryNotFoundException("Category not found: " + categoryName);
+        lock.readLock().lock();
+        try {
+            Category category = categories.get(categoryName);
+            if (category == null) {
+                throw new CategoryNotFoundException("Category not found: " + categoryName);
+            }
+            return category;
+        } finally {
+            lock.readLock().unlock();
         }
-        return category;
     }
 
     public String getTotalBalance() {
-        return "Total Balance: " + totalBalance;
+        lock.readLock().lock();
+        try {
+            if (foreignBalance == null) {
+                return "Total Balance: " + Money.format(balanceCents);
+            }
+            Converted totals = converted();
+            return "Total Balance: " + Money.format(totals.balance()) + excludedNote(totals.balanceExcluded());
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public String getTotalIncome() {
-        double totalIncome = 0;
-        for (Category category : categories.values()) {
-            if (category instanceof IncomeCategory) {
-                totalIncome += category.getCurrentAmount();
+        lock.readLock().lock();
+        try {
+            if (foreignBalance == null) {
+                return "Total Income: " + Money.format(totalIncome);
             }
+            Converted totals = converted();
+            return "Total Income: " + Money.format(totals.income()) + excludedNote(totals.incomeExcluded());
+        } finally {
+            lock.readLock().unlock();
         }
-        return "Total Income: " + totalIncome;
     }
 
     public String getTotalExpenses() {
-        double totalExpenses = 0;
-        for (Category category : categories.values()) {
-            if (category instanceof ExpenseCategory) {
-                totalExpenses += category.getCurrentAmount();
+        lock.readLock().lock();
+        try {
+            if (foreignBalance == null) {
+                return "Total Expenses: " + Money.format(totalExpenses);
             }
+            Converted totals = converted();
+            return "Total Expenses: " + Money.format(totals.expenses()) + excludedNote(totals.expensesExcluded());
+        } finally {
+            lock.readLock().unlock();
         }
-        return "Total Expenses: " + totalExpenses;
     }
 
     public String getIncomeByCategories() {
-        StringBuilder result = new StringBuilder("Income by categories:\n");
-        for (Category category : categories.values()) {
-            if (category instanceof IncomeCategory) {
-                result.append(category.getName())
-                        .append(": ")
-                        .append(category.getCurrentAmount())
+        lock.readLock().lock();
+        try {
+            StringBuilder result = new StringBuilder("Income by categories:\n");
+            for (IncomeCategory category : incomeCategories) {
+                Money.appendTo(result.append(category.getName()).append(": "), category.getCurrentAmount())
                         .append("\n");
             }
+            return result.toString();
+        } finally {
+            lock.readLock().unlock();
         }
-        return result.toString();
     }
 
     public String getIncomeByCategory(String categoryName) throws CategoryNotFoundException, InvalidCategoryTypeException {
-        Category category = categories.get(categoryName);
+        lock.readLock().lock();
+        try {
+            Category category = categories.get(categoryName);
 
-        if (category == null) {
-            throw new CategoryNotFoundException("Category not found: " + categoryName);
-        }
+            if (category == null) {
+                throw new CategoryNotFoundException("Category not found: " + categoryName);
+            }
 
-        if (!(category instanceof IncomeCategory)) {
-            throw new InvalidCategoryTypeException("Category " + categoryName + " is not an income category.");
-        }
+            if (!(category instanceof IncomeCategory)) {
+                throw new InvalidCategoryTypeException("Category " + categoryName + " is not an income category.");
+            }
 
-        return "Income in category " + categoryName + ": " + category.getCurrentAmount();
+            return "Income in category " + categoryName + ": " + Money.format(category.getCurrentAmount());
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public String getExpensesByCategories() {
-        StringBuilder result = new StringBuilder("Expenses by categories:\n");
-        for (Category category : categories.values()) {
-            if (category instanceof ExpenseCategory) {
-                ExpenseCategory expenseCategory = (ExpenseCategory) category;
-                result.append(expenseCategory.getName())
-                        .append(": Spent ")
-                        .append(expenseCategory.getCurrentAmount());
+        lock.readLock().lock();
+        try {
+            StringBuilder result = new StringBuilder("Expenses by categories:\n");
+            for (ExpenseCategory expenseCategory : expenseCategories) {
+                Money.appendTo(result.append(expenseCategory.getName()).append(": Spent "), expenseCategory.getCurrentAmount());
                 if (expenseCategory.getBudget() > 0) {
-                    result.append(", Budget: ")
-                            .append(expenseCategory.getBudget())
-                            .append(", Remaining: ")
-                            .append(expenseCategory.getRemainingBudget());
+                    Money.appendTo(result.append(", Budget: "), expenseCategory.getBudget());
+                    Money.appendTo(result.append(", Remaining: "), expenseCategory.getRemainingBudget());
                 }
                 result.append("\n");
             }
+            return result.toString();
+        } finally {
+            lock.readLock().unlock();
         }
-        return result.toString();
     }
 
     public String getExpenseByCategory(String categoryName) throws CategoryNotFoundException, InvalidCategoryTypeException {
-        Category category = categories.get(categoryName);
+        lock.readLock().lock();
+        try {
+            Category category = categories.get(categoryName);
+
+            if (category == null) {
+                throw new CategoryNotFoundException("Category not found: " + categoryName);
+            }
+
+            if (!(category instanceof ExpenseCategory)) {
+                throw new InvalidCategoryTypeException("Category " + categoryName + " is not an expense category.");
+            }
+
+            ExpenseCategory expenseCategory = (ExpenseCategory) category;
+            StringBuilder result = new StringBuilder("Category: ").append(expenseCategory.getName()).append(", Spent: ");
+            Money.appendTo(result, expenseCategory.getCurrentAmount());
+
+            if (expenseCategory.getBudget() > 0) {
+                Money.appendTo(result.append(", Budget: "), expenseCategory.getBudget());
+                Money.appendTo(result.append(", Remaining: "), expenseCategory.getRemainingBudget());
+            }
+
+            return result.toString();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-        if (category == null) {
-            throw new CategoryNotFoundException("Category not found: " + categoryName);
+    // Looks up many categories of one type in a single pass under one lock. Missing and wrong-typed
+    // names come back as statuses rather than exceptions, in the order they were asked for.
+    public List<CategoryResult> queryCategories(Collection<String> names, boolean expenses) {
+        List<CategoryResult> results = new ArrayList<>(names.size());
+        lock.readLock().lock();
+        try {
+            for (String name : names) {
+                Category category = categories.get(name);
+                if (category == null) {
+                    results.add(new CategoryResult(name, CategoryResult.Status.NOT_FOUND, 0, 0));
+                } else if (category instanceof ExpenseCategory != expenses) {
+                    results.add(new CategoryResult(name, CategoryResult.Status.WRONG_TYPE, 0, 0));
+                } else {
+                    long budget = category instanceof ExpenseCategory expense ? expense.getBudget() : 0;
+                    results.add(new CategoryResult(name, CategoryResult.Status.FOUND, category.getCurrentAmount(), budget));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
         }
+        return results;
+    }
 
-        if (!(category instanceof ExpenseCategory)) {
-            throw new InvalidCategoryTypeException("Category " + categoryName + " is not an expense category.");
+    // Summary restricted to transactions dated in [from, to]; the balance is the net for the period.
+    public WalletSummary getSummary(LocalDate from, LocalDate to) {
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        lock.readLock().lock();
+        try {
+            List<CategorySummary> summaries = new ArrayList<>(incomeCategories.size() + expenseCategories.size());
+            for (IncomeCategory category : incomeCategories) {
+                summaries.add(new CategorySummary(category.getName(), false, sum(category.days, category.foreignDays, fromDay, toDay), 0));
+            }
+            for (ExpenseCategory category : expenseCategories) {
+                summaries.add(new CategorySummary(category.getName(), true, sum(category.days, category.foreignDays, fromDay, toDay),
+                        category.getBudget()));
+            }
+            long income = sum(incomeByDay, foreignIncomeByDay, fromDay, toDay);
+            long expenses = sum(expensesByDay, foreignExpensesByDay, fromDay, toDay);
+            return new WalletSummary(income, expenses, income - expenses, summaries);
+        } finally {
+            lock.readLock().unlock();
         }
+    }
 
-        ExpenseCategory expenseCategory = (ExpenseCategory) category;
-        StringBuilder result = new StringBuilder("Category: " + expenseCategory.getName() + ", Spent: " + expenseCategory.getCurrentAmount());
+    public long getIncomeBetween(LocalDate from, LocalDate to) {
+        lock.readLock().lock();
+        try {
+            return sum(incomeByDay, foreignIncomeByDay, from.toEpochDay(), to.toEpochDay());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-        if (expenseCategory.getBudget() > 0) {
-            result.append(", Budget: ")
-                    .append(expenseCategory.getBudget())
-                    .append(", Remaining: ")
-                    .append(expenseCategory.getRemainingBudget());
+    public long getExpensesBetween(LocalDate from, LocalDate to) {
+        lock.readLock().lock();
+        try {
+            return sum(expensesByDay, foreignExpensesByDay, from.toEpochDay(), to.toEpochDay());
+        } finally {
+            lock.readLock().unlock();
         }
+    }
+
+    public String getTotalIncome(LocalDate from, LocalDate to) {
+        return "Total Income from " + from + " to " + to + ": " + Money.format(getIncomeBetween(from, to));
+    }
+
+    public String getTotalExpenses(LocalDate from, LocalDate to) {
+        return "Total Expenses from " + from + " to " + to + ": " + Money.format(getExpensesBetween(from, to));
+    }
+
+    public String getIncomeByCategory(String categoryName, LocalDate from, LocalDate to) throws CategoryNotFoundException, InvalidCategoryTypeException {
+        lock.readLock().lock();
+        try {
+            Category category = categories.get(categoryName);
+
+            if (category == null) {
+                throw new CategoryNotFoundException("Category not found: " + categoryName);
+            }
+
+            if (!(category instanceof IncomeCategory)) {
+                throw new InvalidCategoryTypeException("Category " + categoryName + " is not an income category.");
+            }
 
-        return result.toString();
+            long income = sum(category.days, category.foreignDays, from.toEpochDay(), to.toEpochDay());
+            return "Income in category " + categoryName + " from " + from + " to " + to + ": " + Money.format(income);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public String getExpenseByCategory(String categoryName, LocalDate from, LocalDate to) throws CategoryNotFoundException, InvalidCategoryTypeException {
+        lock.readLock().lock();
+        try {
+            Category category = categories.get(categoryName);
+
+            if (category == null) {
+                throw new CategoryNotFoundException("Category not found: " + categoryName);
+            }
+
+            if (!(category instanceof ExpenseCategory)) {
+                throw new InvalidCategoryTypeException("Category " + categoryName + " is not an expense category.");
+            }
+
+            long spent = sum(category.days, category.foreignDays, from.toEpochDay(), to.toEpochDay());
+            return "Category: " + categoryName + ", Spent from " + from + " to " + to + ": " + Money.format(spent);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Snapshot form, see SnapshotCodec. The history is one block, which may be compressed.
+    void encode(SnapshotCodec.Output out) {
+        lock.readLock().lock();
+        try {
+            out.signed(balanceCents);
+            out.unsigned(journalSeq);
+            out.signed(balanceFloorCents);
+            out.unsigned(categories.size());
+            for (Category category : categories.values()) {
+                SnapshotCodec.writeCategory(out, category);
+            }
+            out.unsigned(nextRecurringId);
+            out.unsigned(recurring.size());
+            for (RecurringTransaction definition : recurring) {
+                SnapshotCodec.writeRecurring(out, definition);
+            }
+            out.block(history::encode);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static Wallet decode(SnapshotCodec.Input in) throws IOException {
+        Wallet wallet = new Wallet();
+        wallet.balanceCents = in.signed();
+        wallet.journalSeq = in.unsigned();
+        wallet.balanceFloorCents = in.signed();
+        int categoryCount = in.count();
+        for (int i = 0; i < categoryCount; i++) {
+            Category category = SnapshotCodec.readCategory(in);
+            wallet.categories.put(category.getName(), category);
+        }
+        wallet.nextRecurringId = (int) in.unsigned();
+        int recurringCount = in.count();
+        for (int i = 0; i < recurringCount; i++) {
+            wallet.recurring.add(SnapshotCodec.readRecurring(in));
+        }
+        wallet.history = TransactionStore.decode(in.block());
+        wallet.rebuildIndexes();
+        // Freshly loaded state is what is on disk, as for a deserialized wallet.
+        wallet.version = 0;
+        return wallet;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.defaultWriteObject();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Wallets saved before the columnar store kept their history in a List<Transaction> field,
+    // and before amounts moved to cents the balance was a double totalBalance.
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        categories = new LinkedHashMap<>((Map<String, Category>) fields.get("categories", null));
+        balanceCents = fields.defaulted("balanceCents")
+                ? Money.fromDouble(fields.get("totalBalance", 0.0))
+                : fields.get("balanceCents", 0L);
+        history = (TransactionStore) fields.get("history", null);
+        journalSeq = fields.get("journalSeq", 0L);
+        balanceFloorCents = fields.get("balanceFloorCents", 0L);
+        recurring = (ArrayList<RecurringTransaction>) fields.get("recurring", null);
+        nextRecurringId = fields.get("nextRecurringId", 0);
+        if (recurring == null) {
+            recurring = new ArrayList<>();
+        }
+        lock = new ReentrantReadWriteLock();
+
+        if (history == null) {
+            history = new TransactionStore();
+            List<Transaction> transactions = (List<Transaction>) fields.get("transactions", null);
+            if (transactions != null) {
+                for (Transaction transaction : transactions) {
+                    history.add(transaction);
+                }
+            }
+        }
+        rebuildIndexes();
+    }
+
+    // Derives the in-memory indexes from the persistent fields after loading.
+    private void rebuildIndexes() {
+        incomeCategories = new ArrayList<>();
+        expenseCategories = new ArrayList<>();
+        categoriesById = new ArrayList<>();
+        for (Category category : categories.values()) {
+            register(category);
+            index(category, false);
+        }
+
+        incomeByDay = new DayIndex();
+        expensesByDay = new DayIndex();
+        for (int i = 0; i < history.size(); i++) {
+            Category category = categoryOf(history.getCategoryId(i));
+            long timestamp = history.getTimestamp(i);
+            int currencyId = history.getCurrencyId(i);
+            if (category != null && currencyId != 0) {
+                addForeign(category, currencyId, history.getAmount(i), history.isExpense(i), timestamp, true);
+            } else if (category != null && timestamp != Transaction.UNDATED) {
+                long day = Transaction.dayOf(timestamp);
+                category.days.addRaw(day, history.getAmount(i));
+                (category instanceof ExpenseCategory ? expensesByDay : incomeByDay).addRaw(day, history.getAmount(i));
+            }
+        }
+        for (Category category : categories.values()) {
+            category.days.build();
+            build(category.foreignDays);
+        }
+        incomeByDay.build();
+        expensesByDay.build();
+        build(foreignIncomeByDay);
+        build(foreignExpensesByDay);
+    }
+
+    // Adds a row in another currency to the foreign sums; raw defers the day index rebuild to
+    // build(), as when loading.
+    private void addForeign(Category category, int currencyId, long amount, boolean isExpense, long timestamp, boolean raw) {
+        category.foreignCents = grow(category.foreignCents, currencyId);
+        category.foreignCents[currencyId] += amount;
+        foreignIncome = grow(foreignIncome, currencyId);
+        foreignExpenses = grow(foreignExpenses, currencyId);
+        foreignBalance = grow(foreignBalance, currencyId);
+        boolean expenseCategory = category instanceof ExpenseCategory;
+        (expenseCategory ? foreignExpenses : foreignIncome)[currencyId] += amount;
+        foreignBalance[currencyId] += isExpense ? -amount : amount;
+
+        if (timestamp != Transaction.UNDATED) {
+            long day = Transaction.dayOf(timestamp);
+            category.foreignDays = addDay(category.foreignDays, currencyId, day, amount, raw);
+            if (expenseCategory) {
+                foreignExpensesByDay = addDay(foreignExpensesByDay, currencyId, day, amount, raw);
+            } else {
+                foreignIncomeByDay = addDay(foreignIncomeByDay, currencyId, day, amount, raw);
+            }
+        }
+    }
+
+    private static long[] grow(long[] sums, int currencyId) {
+        if (sums == null) {
+            return new long[currencyId + 1];
+        }
+        return currencyId < sums.length ? sums : Arrays.copyOf(sums, currencyId + 1);
+    }
+
+    private static DayIndex[] addDay(DayIndex[] indexes, int currencyId, long day, long amount, boolean raw) {
+        if (indexes == null) {
+            indexes = new DayIndex[currencyId + 1];
+        } else if (currencyId >= indexes.length) {
+            indexes = Arrays.copyOf(indexes, currencyId + 1);
+        }
+        if (indexes[currencyId] == null) {
+            indexes[currencyId] = new DayIndex();
+        }
+        if (raw) {
+            indexes[currencyId].addRaw(day, amount);
+        } else {
+            indexes[currencyId].add(day, amount);
+        }
+        return indexes;
+    }
+
+    private static void build(DayIndex[] indexes) {
+        if (indexes != null) {
+            for (DayIndex index : indexes) {
+                if (index != null) {
+                    index.build();
+                }
+            }
+        }
+    }
+
+    private long balance() {
+        return foreignBalance == null ? balanceCents : converted().balance();
+    }
+
+    // Totals converted at the current rates. Recomputed in O(currencies) only when the rates or
+    // the wallet changed since the last call: every change to the home or foreign totals bumps
+    // version. Concurrent readers may both recompute, which is harmless as they publish equal
+    // values.
+    private Converted converted() {
+        ExchangeRates rates = ExchangeRates.current();
+        Converted cached = converted;
+        if (cached != null && cached.ratesVersion() == rates.version() && cached.walletVersion() == version) {
+            return cached;
+        }
+
+        long income = totalIncome;
+        long expenses = totalExpenses;
+        long balance = balanceCents;
+        String incomeExcluded = null;
+        String expensesExcluded = null;
+        String balanceExcluded = null;
+        for (int id = 1; id < foreignBalance.length; id++) {
+            String code = history.getCurrency(id);
+            double rate = rates.rate(code);
+            if (Double.isNaN(rate)) {
+                incomeExcluded = exclude(incomeExcluded, foreignIncome[id] != 0, code);
+                expensesExcluded = exclude(expensesExcluded, foreignExpenses[id] != 0, code);
+                balanceExcluded = exclude(balanceExcluded, foreignIncome[id] != 0 || foreignExpenses[id] != 0, code);
+                continue;
+            }
+            income += Math.round(foreignIncome[id] * rate);
+            expenses += Math.round(foreignExpenses[id] * rate);
+            balance += Math.round(foreignBalance[id] * rate);
+        }
+        cached = new Converted(rates.version(), version, income, expenses, balance, incomeExcluded, expensesExcluded, balanceExcluded);
+        converted = cached;
+        return cached;
+    }
+
+    private static String exclude(String excluded, boolean present, String code) {
+        if (!present) {
+            return excluded;
+        }
+        return excluded == null ? code : excluded + ", " + code;
+    }
+
+    private static String excludedNote(String excluded) {
+        return excluded == null ? "" : " (excluding " + excluded + ": no exchange rate)";
+    }
+
+    // A category's home-currency sum plus its foreign sums at the current rates, for
+    // Category.getCurrentAmount(). Currencies without a rate are left out.
+    long convert(long homeCents, long[] foreignCents) {
+        ExchangeRates rates = ExchangeRates.current();
+        long total = homeCents;
+        for (int id = 1; id < foreignCents.length; id++) {
+            if (foreignCents[id] != 0) {
+                double rate = rates.rate(history.getCurrency(id));
+                if (!Double.isNaN(rate)) {
+                    total += Math.round(foreignCents[id] * rate);
+                }
+            }
+        }
+        return total;
+    }
+
+    // Sum over [fromDay, toDay] of a home-currency day index and its foreign counterparts,
+    // converted at the current rates.
+    private long sum(DayIndex home, DayIndex[] foreign, long fromDay, long toDay) {
+        long total = home.sum(fromDay, toDay);
+        if (foreign == null) {
+            return total;
+        }
+        ExchangeRates rates = ExchangeRates.current();
+        for (int id = 1; id < foreign.length; id++) {
+            double rate = rates.rate(history.getCurrency(id));
+            if (foreign[id] != null && !Double.isNaN(rate)) {
+                total += Math.round(foreign[id].sum(fromDay, toDay) * rate);
+            }
+        }
+        return total;
     }
 }
@@ -0,0 +1,19 @@
+package model;
+
+public interface WalletListener {
+    void transactionAdded(Transaction transaction);
+
+    void categoryAdded(Category category);
+
+    void budgetChanged(ExpenseCategory category);
+
+    void balanceFloorChanged(long floor);
+
+    void recurringAdded(RecurringTransaction definition);
+
+    // The definition's occurrence count advanced; the new occurrences were added without
+    // transactionAdded calls.
+    void recurringApplied(RecurringTransaction definition);
+
+    void recurringRemoved(RecurringTransaction definition);
+}
@@ -0,0 +1,7 @@
+package model;
+
+import java.util.List;
+
+// Typed form of the wallet reports: totals plus every category, income categories first.
+public record WalletSummary(long income, long expenses, long balance, List<CategorySummary> categories) {
+}
@@ -0,0 +1,184 @@
+package service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Report output to a file without stalling the caller on disk writes. Bytes collect in a buffer
+// that is handed to a background thread when it fills up or on flush(); the thread appends it to
+// the file through a FileChannel and recycles it. Only when every buffer is in flight does a
+// writer wait. The file can be rotated to <file>.1, <file>.2, ... after a size or age limit.
+public class AsyncFileSink extends OutputStream {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BUFFERS = 8;
+    private static final ByteBuffer CLOSE = ByteBuffer.allocate(0);
+
+    private final Path path;
+    private final long rotateBytes;
+    private final long rotateMillis;
+    private final BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<>(BUFFERS + 1);
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BUFFERS);
+    private final Thread writer;
+    private ByteBuffer current;
+    private FileChannel channel;
+    private long fileBytes;
+    private long openedAt;
+    private int rotations;
+    private volatile IOException failure;
+    private boolean closed;
+
+    // rotateBytes and rotateMillis of 0 disable the respective rotation.
+    public AsyncFileSink(Path path, long rotateBytes, long rotateMillis) throws IOException {
+        this.path = path;
+        this.rotateBytes = rotateBytes;
+        this.rotateMillis = rotateMillis;
+        open();
+        for (int i = 0; i < BUFFERS; i++) {
+            free.add(ByteBuffer.allocate(BUFFER_SIZE));
+        }
+        current = free.poll();
+
+        writer = new Thread(this::drain, "output-sink " + path.getFileName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileBytes = channel.size();
+        openedAt = System.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        ensureOpen();
+        if (!current.hasRemaining()) {
+            handOff();
+        }
+        current.put((byte) b);
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        while (length > 0) {
+            if (!current.hasRemaining()) {
+                handOff();
+            }
+            int count = Math.min(length, current.remaining());
+            current.put(bytes, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    // A flush point: queues what has been written so far. It does not wait for the disk.
+    @Override
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        if (current.position() > 0) {
+            handOff();
+        }
+    }
+
+    // Waits until everything written so far is in the file, then stops the background thread.
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        try {
+            filled.put(CLOSE);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing " + path, e);
+        }
+        checkFailure();
+    }
+
+    private void handOff() throws IOException {
+        checkFailure();
+        try {
+            current.flip();
+            filled.put(current);
+            current = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing " + path, e);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Output sink is closed: " + path);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            throw new IOException("Error writing " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                ByteBuffer buffer = filled.take();
+                if (buffer == CLOSE) {
+                    break;
+                }
+                if (failure == null) {
+                    try {
+                        rotateIfNeeded();
+                        while (buffer.hasRemaining()) {
+                            fileBytes += channel.write(buffer);
+                        }
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+                buffer.clear();
+                free.add(buffer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    private void rotateIfNeeded() throws IOException {
+        boolean full = rotateBytes > 0 && fileBytes >= rotateBytes;
+        boolean old = rotateMillis > 0 && System.currentTimeMillis() - openedAt >= rotateMillis;
+        if (!full && !old || fileBytes == 0) {
+            return;
+        }
+
+        channel.force(false);
+        channel.close();
+        Path rotated;
+        do {
+            rotated = path.resolveSibling(path.getFileName() + "." + ++rotations);
+        } while (Files.exists(rotated));
+        Files.move(path, rotated, StandardCopyOption.ATOMIC_MOVE);
+        open();
+    }
+}
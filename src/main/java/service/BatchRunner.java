@@ -0,0 +1,217 @@
+package service;
+
+import model.ExchangeRates;
+import model.Metrics;
+import model.Money;
+import model.Transaction;
+import model.Wallet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// Executes a command script line by line through the same operations as the menu. One command per
+// line, arguments separated by whitespace, names containing spaces in double quotes, '#' starts a
+// comment:
+//
+//   register <user> <password>        login <user> <password>        logout
+//   expense <category> <amount> [YYYY-MM-DD] [currency]
+//   income <category> <amount> [YYYY-MM-DD] [currency]
+//   budget <category> <amount>        import <csv file>        commit
+//   export <text|jsonl|binary> <file>      floor <amount>
+//   balance | total-income | total-expenses | income-by-categories | expenses-by-categories
+//   metrics
+//
+// Successful changes are silent; failures are reported with their line number. Remote runners
+// (see FinanceServer) refuse import, export and commit, which touch the server's files.
+class BatchRunner {
+    // Commands timed under "command.<name>"; anything else is not recorded, so clients cannot
+    // create timers at will.
+    private static final Set<String> COMMANDS = Set.of("register", "login", "logout", "expense", "income", "budget",
+            "import", "export", "floor", "commit", "balance", "total-income", "total-expenses", "income-by-categories",
+            "expenses-by-categories", "metrics");
+
+    private final FinanceManager manager;
+    private final Session session;
+    private final PrintStream output;
+    private final int commitEvery;
+    private final boolean remote;
+    private final List<String> args = new ArrayList<>();
+    private int operations;
+    private int failures;
+
+    BatchRunner(FinanceManager manager, Session session, PrintStream output, int commitEvery) {
+        this(manager, session, output, commitEvery, false);
+    }
+
+    BatchRunner(FinanceManager manager, Session session, PrintStream output, int commitEvery, boolean remote) {
+        this.manager = manager;
+        this.session = session;
+        this.output = output;
+        this.commitEvery = commitEvery;
+        this.remote = remote;
+    }
+
+    void run(BufferedReader input) throws IOException {
+        long started = System.nanoTime();
+        String line;
+        int lineNumber = 0;
+
+        while ((line = input.readLine()) != null) {
+            lineNumber++;
+            String error = execute(line);
+            if (error == null && args.isEmpty()) {
+                continue;
+            }
+            if (error != null) {
+                failures++;
+                output.println("Line " + lineNumber + ": " + error);
+            }
+
+            if (++operations % commitEvery == 0) {
+                manager.commit();
+            }
+        }
+
+        long elapsed = (System.nanoTime() - started) / 1_000_000;
+        output.println("Batch finished: " + operations + " operations, " + failures + " failed, " + elapsed + " ms.");
+    }
+
+    // Runs one command line. Returns null on success or for a blank line, otherwise the error message.
+    String execute(String line) {
+        long started = Metrics.start();
+        try {
+            tokenize(line, args);
+            return args.isEmpty() ? null : execute(args);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return e.getMessage();
+        } finally {
+            if (Metrics.ENABLED && !args.isEmpty() && COMMANDS.contains(args.get(0).toLowerCase())) {
+                Metrics.timer("command." + args.get(0).toLowerCase()).stop(started);
+            }
+        }
+    }
+
+    private String execute(List<String> args) {
+        String command = args.get(0).toLowerCase();
+        if (remote && (command.equals("import") || command.equals("export") || command.equals("commit"))) {
+            return "Not available over the network: " + command;
+        }
+        switch (command) {
+            case "register":
+                expect(args, 3);
+                return failure(manager.register(session, args.get(1), args.get(2)));
+            case "login":
+                expect(args, 3);
+                return failure(manager.login(session, args.get(1), args.get(2)));
+            case "logout":
+                expect(args, 1);
+                manager.logout(session);
+                return null;
+            case "expense":
+            case "income":
+                if (args.size() < 3 || args.size() > 5) {
+                    throw new IllegalArgumentException("Usage: " + command + " <category> <amount> [YYYY-MM-DD] [currency]");
+                }
+                // A currency code is three letters, which no date is.
+                String currency = args.size() > 3 && ExchangeRates.isCode(args.get(args.size() - 1)) ? args.get(args.size() - 1) : null;
+                int dateIndex = currency == null ? 3 : 4;
+                long timestamp = args.size() > dateIndex
+                        ? Transaction.timestampOf(Transaction.checkDate(LocalDate.parse(args.get(3))))
+                        : System.currentTimeMillis();
+                if (args.size() > dateIndex + 1) {
+                    throw new IllegalArgumentException("Usage: " + command + " <category> <amount> [YYYY-MM-DD] [currency]");
+                }
+                Transaction transaction = new Transaction(args.get(1), Money.parse(args.get(2)), command.equals("expense"), timestamp, currency);
+                return failure(manager.addTransaction(session, transaction));
+            case "budget":
+                expect(args, 3);
+                return failure(manager.setBudget(session, args.get(1), Money.parse(args.get(2))));
+            case "import":
+                expect(args, 2);
+                return failure(manager.importStatement(session, Paths.get(args.get(1))));
+            case "export":
+                expect(args, 3);
+                return failure(manager.exportReport(session, args.get(1), Paths.get(args.get(2))));
+            case "floor":
+                expect(args, 2);
+                return failure(manager.setBalanceFloor(session, Money.parse(args.get(1))));
+            case "commit":
+                expect(args, 1);
+                manager.commit();
+                return null;
+            case "metrics":
+                expect(args, 1);
+                output.print(Metrics.report());
+                return null;
+            case "balance":
+            case "total-income":
+            case "total-expenses":
+            case "income-by-categories":
+            case "expenses-by-categories":
+                expect(args, 1);
+                return report(command);
+            default:
+                return "Unknown command: " + args.get(0);
+        }
+    }
+
+    private String report(String command) {
+        if (!session.isLoggedIn()) {
+            return "You need to log in first.";
+        }
+
+        Wallet wallet = session.getUser().getWallet();
+        switch (command) {
+            case "balance": output.println(wallet.getTotalBalance()); break;
+            case "total-income": output.println(wallet.getTotalIncome()); break;
+            case "total-expenses": output.println(wallet.getTotalExpenses()); break;
+            case "income-by-categories": output.println(wallet.getIncomeByCategories()); break;
+            default: output.println(wallet.getExpensesByCategories()); break;
+        }
+        return null;
+    }
+
+    private static String failure(FinanceManager.Outcome outcome) {
+        return outcome.success() ? null : outcome.message();
+    }
+
+    private static void expect(List<String> args, int count) {
+        if (args.size() != count) {
+            throw new IllegalArgumentException("Expected " + (count - 1) + " argument(s) for " + args.get(0));
+        }
+    }
+
+    private static void tokenize(String line, List<String> args) {
+        args.clear();
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            char c = line.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '#') {
+                return;
+            } else if (c == '"') {
+                int end = line.indexOf('"', i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated quote");
+                }
+                args.add(line.substring(i + 1, end));
+                i = end + 1;
+            } else {
+                int start = i;
+                while (i < length && !Character.isWhitespace(line.charAt(i))) {
+                    i++;
+                }
+                args.add(line.substring(start, i));
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package service;
+
+import model.CategorySummary;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// Compact big-endian records, each starting with a tag byte. Strings are a u16 byte length plus
+// UTF-8; amounts are cents as i64. Transactions refer to category names through ids that a NAME
+// record introduces the first time each name is used.
+//
+//   header       'F' 'M' 'R' 1
+//   TOTALS   1   income i64, expenses i64, balance i64
+//   CATEGORY 2   name str, expense u8, amount i64, budget i64
+//   NAME     3   id i32, name str
+//   TX       4   id i32, expense u8, amount i64, timestamp i64 (Long.MIN_VALUE = undated)
+//   CUR_TX   5   as TX, then the currency code as 3 ASCII bytes
+//
+// TX amounts are in the home currency, CUR_TX amounts in the currency given.
+public class BinaryReportWriter extends ReportWriter {
+    public static final byte TOTALS = 1;
+    public static final byte CATEGORY = 2;
+    public static final byte NAME = 3;
+    public static final byte TRANSACTION = 4;
+    public static final byte CURRENCY_TRANSACTION = 5;
+
+    private final Map<String, Integer> names = new HashMap<>();
+    private boolean headerWritten;
+
+    public BinaryReportWriter(WritableByteChannel channel, boolean closeChannel) {
+        super(channel, closeChannel);
+    }
+
+    private void header() throws IOException {
+        if (!headerWritten) {
+            reserve(4).put((byte) 'F').put((byte) 'M').put((byte) 'R').put((byte) 1);
+            headerWritten = true;
+        }
+    }
+
+    @Override
+    protected void writeTotals(long income, long expenses, long balance) throws IOException {
+        header();
+        reserve(25).put(TOTALS).putLong(income).putLong(expenses).putLong(balance);
+    }
+
+    @Override
+    protected void writeCategory(CategorySummary category) throws IOException {
+        header();
+        put(CATEGORY);
+        putString(category.name());
+        reserve(17).put((byte) (category.expense() ? 1 : 0)).putLong(category.amount()).putLong(category.budget());
+    }
+
+    @Override
+    protected void writeTransaction(String category, long amount, boolean expense, long timestamp, String currency) throws IOException {
+        header();
+        Integer id = names.get(category);
+        if (id == null) {
+            id = names.size();
+            names.put(category, id);
+            put(NAME);
+            reserve(4).putInt(id);
+            putString(category);
+        }
+        if (currency == null) {
+            reserve(22).put(TRANSACTION).putInt(id).put((byte) (expense ? 1 : 0)).putLong(amount).putLong(timestamp);
+        } else {
+            reserve(25).put(CURRENCY_TRANSACTION).putInt(id).put((byte) (expense ? 1 : 0)).putLong(amount).putLong(timestamp);
+            putAscii(currency);
+        }
+    }
+
+    private void putString(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("Name too long for binary report: " + text.substring(0, 32) + "...");
+        }
+        reserve(2).putShort((short) bytes.length);
+        putBytes(bytes);
+    }
+}
@@ -0,0 +1,257 @@
+package service;
+
+import model.ExchangeRates;
+import model.Money;
+import model.Transaction;
+import model.TransactionStore;
+import model.Wallet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Streams a bank statement in CSV form into a wallet. Rows are "date,category,amount[,currency]"
+// with the date as YYYY-MM-DD; a negative amount is an expense, a positive one income, and a row
+// without a currency code is in the home currency. Fields may be double-quoted, and a first line
+// that does not start with a date is taken as a header.
+//
+// The reader thread cuts the file into chunks of lines, worker threads parse and validate them
+// into columnar batches, and the batches are applied to the wallet in file order. At most a few
+// chunks per worker are in flight, so memory stays bounded whatever the file size.
+public class CsvImporter {
+    private static final int CHUNK_LINES = 16 * 1024;
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    public record Result(int imported, int failed, List<String> errors, long elapsedMillis) {
+    }
+
+    private record Chunk(TransactionStore rows, int[] lineNumbers, List<String> errors) {
+    }
+
+    private final int threads;
+
+    public CsvImporter(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public Result importFile(Path file, Wallet wallet) throws IOException {
+        long started = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        Counts counts = new Counts();
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            int lineNumber = 0;
+            String line = reader.readLine();
+            if (line != null && !startsWithDate(line)) {
+                lineNumber++;
+                line = reader.readLine();
+            }
+
+            while (line != null) {
+                String[] lines = new String[CHUNK_LINES];
+                int firstLine = lineNumber + 1;
+                int count = 0;
+                while (line != null && count < CHUNK_LINES) {
+                    lines[count++] = line;
+                    lineNumber++;
+                    line = reader.readLine();
+                }
+
+                int size = count;
+                inFlight.add(workers.submit(() -> parse(lines, size, firstLine)));
+                if (inFlight.size() >= threads * 2) {
+                    apply(inFlight.poll(), wallet, counts);
+                }
+            }
+
+            while (!inFlight.isEmpty()) {
+                apply(inFlight.poll(), wallet, counts);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        return new Result(counts.imported, counts.failed, counts.errors, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private static class Counts {
+        int imported;
+        int failed;
+        final List<String> errors = new ArrayList<>();
+
+        void error(String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(message);
+            }
+        }
+    }
+
+    private static void apply(Future<Chunk> pending, Wallet wallet, Counts counts) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error parsing statement: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        for (String error : chunk.errors()) {
+            counts.error(error);
+        }
+
+        BitSet rejected = wallet.addTransactions(chunk.rows());
+        counts.imported += chunk.rows().size() - rejected.cardinality();
+        for (int i = rejected.nextSetBit(0); i >= 0; i = rejected.nextSetBit(i + 1)) {
+            String type = chunk.rows().isExpense(i) ? "Expense" : "Income";
+            counts.error("Line " + chunk.lineNumbers()[i] + ": Transaction type (" + type + ") does not match category type.");
+        }
+    }
+
+    // Bad rows are collected as messages, never thrown, so one malformed line costs no more than a good one.
+    private static Chunk parse(String[] lines, int count, int firstLine) {
+        TransactionStore rows = new TransactionStore();
+        int[] lineNumbers = new int[count];
+        List<String> errors = new ArrayList<>();
+        String[] fields = new String[4];
+
+        for (int i = 0; i < count; i++) {
+            int lineNumber = firstLine + i;
+            String line = lines[i];
+            if (line.isBlank()) {
+                continue;
+            }
+
+            int fieldCount = split(line, fields);
+            if (fieldCount != 3 && fieldCount != 4) {
+                errors.add("Line " + lineNumber + ": expected date,category,amount[,currency]");
+                continue;
+            }
+
+            String code = fieldCount == 4 ? fields[3].trim() : "";
+            if (!code.isEmpty() && !ExchangeRates.isCode(code)) {
+                errors.add("Line " + lineNumber + ": invalid currency \"" + fields[3] + "\"");
+                continue;
+            }
+            String currency = ExchangeRates.normalize(code);
+
+            long timestamp = parseDate(fields[0]);
+            String category = fields[1].trim();
+            String amountText = fields[2].trim();
+            long amount = Money.parse(amountText, 0, amountText.length());
+            if (timestamp == Transaction.UNDATED) {
+                errors.add("Line " + lineNumber + ": invalid date \"" + fields[0] + "\"");
+            } else if (category.isEmpty()) {
+                errors.add("Line " + lineNumber + ": category name cannot be empty");
+            } else if (amount == Money.INVALID || amount == 0) {
+                errors.add("Line " + lineNumber + ": invalid amount \"" + fields[2] + "\"");
+            } else {
+                lineNumbers[rows.size()] = lineNumber;
+                rows.add(rows.intern(category), rows.internCurrency(currency), Math.abs(amount), amount < 0, timestamp);
+            }
+        }
+        return new Chunk(rows, lineNumbers, errors);
+    }
+
+    // Splits a CSV line into at most fields.length fields and returns how many it has,
+    // or -1 for an unterminated quote.
+    private static int split(String line, String[] fields) {
+        int count = 0;
+        int i = 0;
+        int length = line.length();
+        while (true) {
+            String field;
+            if (i < length && line.charAt(i) == '"') {
+                StringBuilder value = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i >= length) {
+                        return -1;
+                    }
+                    char c = line.charAt(i++);
+                    if (c != '"') {
+                        value.append(c);
+                    } else if (i < length && line.charAt(i) == '"') {
+                        value.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                field = value.toString();
+                while (i < length && line.charAt(i) != ',') {
+                    i++;
+                }
+            } else {
+                int end = line.indexOf(',', i);
+                if (end < 0) {
+                    end = length;
+                }
+                field = line.substring(i, end);
+                i = end;
+            }
+
+            if (count < fields.length) {
+                fields[count] = field;
+            }
+            count++;
+            if (i >= length) {
+                return count;
+            }
+            i++;
+        }
+    }
+
+    private static boolean startsWithDate(String line) {
+        int start = line.startsWith("\"") ? 1 : 0;
+        return line.length() >= start + 10 && parseDate(line.substring(start, start + 10)) != Transaction.UNDATED;
+    }
+
+    // Parses YYYY-MM-DD, returning Transaction.UNDATED for anything that is not a real calendar date
+    // in the supported years.
+    private static long parseDate(String text) {
+        String date = text.trim();
+        if (date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return Transaction.UNDATED;
+        }
+        int year = digits(date, 0, 4);
+        int month = digits(date, 5, 7);
+        int day = digits(date, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1) {
+            return Transaction.UNDATED;
+        }
+        if (day > Month.of(month).length(Year.isLeap(year))) {
+            return Transaction.UNDATED;
+        }
+        LocalDate parsed = LocalDate.of(year, month, day);
+        return Transaction.isSupported(parsed) ? Transaction.timestampOf(parsed) : Transaction.UNDATED;
+    }
+
+    private static int digits(String text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,54 @@
+package service;
+
+import model.ExchangeRates;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Reads exchange rates from a text file, one "CODE rate" pair per line, where the rate is the
+// home-currency value of one unit of CODE. Blank lines and lines starting with '#' are skipped,
+// as is a line for the home currency itself.
+//
+//   # rates into USD, 2026-10-18
+//   EUR 1.0842
+//   GBP 1.2710
+final class ExchangeRateFile {
+    private ExchangeRateFile() {
+    }
+
+    static ExchangeRates read(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Map<String, Double> rates = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] fields = line.split("\\s+");
+            if (fields.length != 2 || !ExchangeRates.isCode(fields[0])) {
+                throw new IOException(file + " line " + (i + 1) + ": expected \"CODE rate\"");
+            }
+            double rate;
+            try {
+                rate = Double.parseDouble(fields[1]);
+            } catch (NumberFormatException e) {
+                throw new IOException(file + " line " + (i + 1) + ": invalid rate \"" + fields[1] + "\"");
+            }
+            if (!(rate > 0) || Double.isInfinite(rate)) {
+                throw new IOException(file + " line " + (i + 1) + ": rate must be positive");
+            }
+
+            String code = fields[0].toUpperCase();
+            if (!code.equals(ExchangeRates.HOME)) {
+                rates.put(code, rate);
+            }
+        }
+        return new ExchangeRates(rates);
+    }
+}
@@ -3,27 +3,182 @@ package service;
 import model.*;
 
 import java.io.*;
-import java.util.HashMap;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
-
-public class FinanceManager {
-    private Map<String, User> users = new HashMap<>();
-    private User currentUser;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public final class FinanceManager {
+    private final int USER_CACHE_SIZE = Integer.getInteger("finance.cache.users", 64);
+    private UserRegistry registry;
+    private final Session session = new Session(System.out);
     private Scanner scanner = new Scanner(System.in);
     private final String DATA_FILE = "finance_manager_data.ser";
-    private PrintStream output = System.out;
+    private final String STORE_NAME = "finance_manager_users";
+    private final String JOURNAL_FILE = "finance_manager_data.journal";
+    private final long JOURNAL_COMPACT_THRESHOLD = Long.getLong("finance.journal.compactBytes", 4 * 1024 * 1024);
+    private final long OUTPUT_ROTATE_BYTES = Long.getLong("finance.output.rotateBytes", 0);
+    private final long OUTPUT_ROTATE_SECONDS = Long.getLong("finance.output.rotateSeconds", 0);
+    private final long CHECKPOINT_INTERVAL_SECONDS = Long.getLong("finance.checkpoint.intervalSeconds", 30);
+    private final long RECURRING_INTERVAL_MINUTES = Long.getLong("finance.recurring.intervalMinutes", 60);
+    private final String METRICS_FILE = "finance_metrics.txt";
+    private final long METRICS_DUMP_SECONDS = Long.getLong("finance.metrics.dumpSeconds", 60);
+    private final String RATES_FILE = "finance_rates.txt";
+    private final long RATES_CHECK_SECONDS = Long.getLong("finance.rates.checkSeconds", 60);
+    private static final Metrics.Timer LOAD = Metrics.timer("startup.load");
+    private static final Metrics.Timer EXPORT = Metrics.timer("report.export");
+    private UserStore store;
+    private Journal journal;
+    private ScheduledExecutorService checkpointer;
+    private final AtomicBoolean checkpointRequested = new AtomicBoolean();
+    private FileTime ratesModified;
+
+    // An amount typed at a prompt, with the currency it was given in (null for the home currency).
+    private record Amount(long cents, String currency) {
+    }
 
     public FinanceManager() {
+        loadRates(false);
         loadData();
+        catchUpRecurring();
+        startCheckpointer();
+    }
+
+    // Periodic checkpoints run on their own thread, so the menu loop never waits for disk I/O
+    // beyond its journal append. A full journal also triggers one early.
+    private void startCheckpointer() {
+        if (CHECKPOINT_INTERVAL_SECONDS <= 0) {
+            return;
+        }
+
+        checkpointer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(this::backgroundCheckpoint, CHECKPOINT_INTERVAL_SECONDS, CHECKPOINT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        if (RECURRING_INTERVAL_MINUTES > 0) {
+            checkpointer.scheduleWithFixedDelay(this::backgroundRecurring, RECURRING_INTERVAL_MINUTES, RECURRING_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        }
+        if (Metrics.ENABLED && METRICS_DUMP_SECONDS > 0) {
+            checkpointer.scheduleWithFixedDelay(this::dumpMetrics, METRICS_DUMP_SECONDS, METRICS_DUMP_SECONDS, TimeUnit.SECONDS);
+        }
+        if (RATES_CHECK_SECONDS > 0) {
+            checkpointer.scheduleWithFixedDelay(() -> loadRates(true), RATES_CHECK_SECONDS, RATES_CHECK_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    // Installs the rates in the rates file, if there is one. With onlyIfChanged the file is read
+    // only when its modification time has moved, so the periodic check is one stat call. Wallets
+    // reconvert their totals on the next report; nothing is rescanned. A bad file leaves the
+    // previous rates in place.
+    private synchronized int loadRates(boolean onlyIfChanged) {
+        Path file = Paths.get(RATES_FILE);
+        try {
+            if (!Files.exists(file)) {
+                return -1;
+            }
+            FileTime modified = Files.getLastModifiedTime(file);
+            if (onlyIfChanged && modified.equals(ratesModified)) {
+                return -1;
+            }
+            ExchangeRates rates = ExchangeRateFile.read(file);
+            ExchangeRates.setCurrent(rates);
+            ratesModified = modified;
+            if (!onlyIfChanged) {
+                System.out.println("Loaded " + rates.size() + " exchange rates into " + ExchangeRates.HOME + ".");
+            }
+            return rates.size();
+        } catch (IOException e) {
+            ratesModified = null;
+            System.out.println("Error loading exchange rates: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private void backgroundCheckpoint() {
+        checkpointRequested.set(false);
+        try {
+            registry.checkpoint();
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error saving data: " + e.getMessage());
+        }
+    }
+
+    // Replaces the metrics file with the current report, through a temporary file so readers
+    // never see a partial one.
+    private void dumpMetrics() {
+        Path file = Paths.get(METRICS_FILE);
+        Path tmp = Paths.get(METRICS_FILE + ".tmp");
+        try {
+            Files.writeString(tmp, LocalDateTime.now() + System.lineSeparator() + Metrics.report());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Error writing metrics: " + e.getMessage());
+        }
     }
 
+    // Books the periods missed while the application was down, for all users at once. The journal
+    // is written in bulk and synced once at the end, as for a statement import.
+    private void catchUpRecurring() {
+        Journal.FsyncPolicy policy = journal == null ? null : journal.getFsyncPolicy();
+        try {
+            if (journal != null) {
+                journal.setFsyncPolicy(Journal.FsyncPolicy.MANUAL);
+            }
+            RecurringScheduler.Result result = new RecurringScheduler(registry).catchUp(LocalDate.now());
+            if (result.transactions() > 0) {
+                System.out.println("Booked " + result.transactions() + " recurring transactions for " + result.users()
+                        + " users in " + result.elapsedMillis() + " ms.");
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error applying recurring transactions: " + e.getMessage());
+        } finally {
+            try {
+                if (journal != null) {
+                    journal.setFsyncPolicy(policy);
+                    journal.sync();
+                }
+            } catch (IOException e) {
+                System.out.println("Error writing journal: " + e.getMessage());
+            }
+        }
+    }
+
+    // Occurrences falling due while the application runs; alerts reach users as notifications.
+    private void backgroundRecurring() {
+        try {
+            new RecurringScheduler(registry).catchUp(LocalDate.now());
+            if (journal != null) {
+                journal.awaitAppended();
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error applying recurring transactions: " + e.getMessage());
+        }
+    }
 
     public void start() {
         while (true) {
             printNotifications();
             printMenu();
             String command = scanner.nextLine().trim().toLowerCase();
+            long started = Metrics.start();
 
             switch (command) {
                 case "1": registerUser(); break;
@@ -41,33 +196,227 @@ public class FinanceManager {
                 case "13": getExpensesByCategories(); break;
                 case "14": configureOutputToFile(); break; // Вывод в файл
                 case "15": resetOutputToConsole(); break;
+                case "17": getTotalsForPeriod(); break;
+                case "18": getIncomeByCategoryForPeriod(); break;
+                case "19": getExpenseByCategoryForPeriod(); break;
+                case "20": importStatement(); break;
+                case "21": exportReport(); break;
+                case "22": setBalanceFloor(); break;
+                case "23": showNotificationHistory(); break;
+                case "24": browseHistory(); break;
+                case "25": showLargestExpenses(); break;
+                case "26": addRecurring(); break;
+                case "27": listRecurring(); break;
+                case "28": removeRecurring(); break;
+                case "29": showMetrics(); break;
+                case "30": reloadRates(); break;
                 case "16":
                     System.out.println("Exiting...");
+                    replaceOutput(System.out);
                     saveData();
+                    closeStorage();
                     return;
-                default: System.out.println("Invalid command. Try again."); break;
+                default: System.out.println("Invalid command. Try again."); command = "invalid"; break;
             }
+
+            // Command boundary: hand buffered report output to the sink's writer thread.
+            session.getOutput().flush();
+            // Menu timings include the time spent typing at the command's prompts.
+            if (Metrics.ENABLED) {
+                Metrics.timer("menu." + command).stop(started);
+            }
+            compactJournalIfNeeded();
         }
     }
 
-    private void saveData() {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) {
-            out.writeObject(users);
+    // Checkpoint: dirty users are appended to the store, the store index is published, and only
+    // then are the journal records they cover dropped, so a crash at any point loses nothing.
+    void saveData() {
+        if (registry == null) {
+            return;
+        }
+
+        try {
+            registry.checkpoint();
             System.out.println("Data saved successfully.");
         } catch (IOException e) {
             System.out.println("Error saving data: " + e.getMessage());
         }
     }
 
+    // Makes the journaled operations so far durable; used by batch mode between bulk chunks.
+    void commit() {
+        try {
+            if (journal != null) {
+                journal.sync();
+            }
+        } catch (IOException e) {
+            System.out.println("Error writing journal: " + e.getMessage());
+        }
+        compactJournalIfNeeded();
+    }
+
+    // Runs a command script instead of the menu. Journal records are buffered and only written
+    // out on commit, every commitEvery operations and once at the end.
+    public void runBatch(Reader input, PrintStream output, int commitEvery) {
+        try {
+            if (journal != null) {
+                journal.setFsyncPolicy(Journal.FsyncPolicy.MANUAL);
+            }
+        } catch (IOException e) {
+            System.out.println("Error writing journal: " + e.getMessage());
+        }
+
+        session.setOutput(output);
+        try {
+            new BatchRunner(this, session, output, commitEvery).run(new BufferedReader(input));
+        } catch (IOException e) {
+            System.out.println("Error reading batch input: " + e.getMessage());
+        } finally {
+            logout(session);
+            commit();
+            saveData();
+            closeStorage();
+            output.flush();
+        }
+    }
+
+    // Serves clients over TCP instead of the menu until the process is stopped. Journal records
+    // are buffered in memory and made durable by the server's group commits.
+    public void runServer(InetSocketAddress address) {
+        try {
+            if (journal != null) {
+                journal.setFsyncPolicy(Journal.FsyncPolicy.MANUAL);
+            }
+        } catch (IOException e) {
+            System.out.println("Error writing journal: " + e.getMessage());
+        }
+
+        FinanceServer server = new FinanceServer(this, journal, address);
+        Thread shutdown = new Thread(() -> {
+            server.stop();
+            commit();
+            saveData();
+            closeStorage();
+        }, "shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdown);
+        try {
+            server.run();
+        } catch (IOException e) {
+            System.out.println("Error running server: " + e.getMessage());
+        }
+    }
+
+    // Month-end style job: one statement file per user, written in parallel.
+    public void runStatements(Path directory, String format, LocalDate from, LocalDate to, int parallelism) {
+        try {
+            StatementJob.Result result = new StatementJob(registry, directory, format, from, to, parallelism).run(System.out);
+            System.out.println("Wrote " + (result.users() - result.failed()) + " statements to " + directory + ", "
+                    + result.failed() + " failed, in " + result.elapsedMillis() + " ms.");
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error writing statements: " + e.getMessage());
+        } finally {
+            closeStorage();
+        }
+    }
+
+    void compactJournalIfNeeded() {
+        try {
+            if (registry == null || registry.journalSize() <= JOURNAL_COMPACT_THRESHOLD) {
+                return;
+            }
+            if (checkpointer == null) {
+                saveData();
+            } else if (checkpointRequested.compareAndSet(false, true)) {
+                checkpointer.execute(this::backgroundCheckpoint);
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading journal: " + e.getMessage());
+        }
+    }
+
+    void closeStorage() {
+        if (Metrics.ENABLED && METRICS_DUMP_SECONDS > 0) {
+            dumpMetrics();
+        }
+        if (checkpointer != null) {
+            checkpointer.shutdown();
+            try {
+                checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+            if (store != null) {
+                store.close();
+            }
+        } catch (IOException e) {
+            System.out.println("Error closing data files: " + e.getMessage());
+        }
+    }
+
     private void loadData() {
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(DATA_FILE))) {
-            users = (Map<String, User>) in.readObject();
-            System.out.println("Data loaded successfully.");
-        } catch (FileNotFoundException e) {
-            System.out.println("No data file found, starting with an empty system.");
+        LoadEvent event = new LoadEvent();
+        event.begin();
+        long started = Metrics.start();
+        try {
+            store = new UserStore(Paths.get("."), STORE_NAME);
+            if (store.hasIndex()) {
+                int converted = store.migrate();
+                if (converted > 0) {
+                    System.out.println("Converted " + converted + " users to the snapshot format.");
+                }
+                System.out.println("Data loaded successfully.");
+            } else if (new File(DATA_FILE).exists()) {
+                migrateLegacyData();
+            } else {
+                System.out.println("No data file found, starting with an empty system.");
+            }
         } catch (IOException | ClassNotFoundException e) {
             System.out.println("Error loading data: " + e.getMessage());
         }
+
+        try {
+            Journal.FsyncPolicy policy = Journal.FsyncPolicy.valueOf(System.getProperty("finance.journal.fsync", "ALWAYS").toUpperCase());
+            journal = new Journal(Paths.get(JOURNAL_FILE), policy, Integer.getInteger("finance.journal.batchSize", 64));
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error opening journal: " + e.getMessage());
+        }
+
+        registry = new UserRegistry(store, journal, USER_CACHE_SIZE);
+        int replayed = 0;
+        try {
+            replayed = registry.recover();
+            if (replayed > 0) {
+                System.out.println("Replayed " + replayed + " journal records.");
+                saveData();
+            }
+        } catch (IOException e) {
+            System.out.println("Error replaying journal: " + e.getMessage());
+        }
+        LOAD.stop(started);
+        if (event.shouldCommit()) {
+            event.users = registry.usernames().size();
+            event.replayed = replayed;
+            event.commit();
+        }
+    }
+
+    // One-time conversion of the old whole-map snapshot into the per-user store.
+    private void migrateLegacyData() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(DATA_FILE)))) {
+            Map<String, User> legacyUsers = (Map<String, User>) in.readObject();
+            for (User user : legacyUsers.values()) {
+                store.write(user);
+            }
+            store.commit();
+            System.out.println("Migrated " + legacyUsers.size() + " users from " + DATA_FILE + ".");
+        }
     }
 
     private void printMenu() {
@@ -88,38 +437,58 @@ public class FinanceManager {
         System.out.println("14. Redirect wallet info output to a file");
         System.out.println("15. Redirect wallet info output back to console");
         System.out.println("16. Exit");
+        System.out.println("17. Get total income and expenses for a period");
+        System.out.println("18. Get income by category for a period");
+        System.out.println("19. Get expense by category for a period");
+        System.out.println("20. Import transactions from a CSV statement");
+        System.out.println("21. Export wallet report (text, jsonl or binary) to a file");
+        System.out.println("22. Set balance alert floor");
+        System.out.println("23. Show notification history");
+        System.out.println("24. Browse transaction history");
+        System.out.println("25. Show largest expenses");
+        System.out.println("26. Add a recurring transaction");
+        System.out.println("27. List recurring transactions");
+        System.out.println("28. Remove a recurring transaction");
+        System.out.println("29. Show performance metrics");
+        System.out.println("30. Reload exchange rates");
     }
 
     private void configureOutputToFile() {
-        output.println("Enter file name to redirect output:");
+        session.getOutput().println("Enter file name to redirect output:");
         String fileName = scanner.nextLine().trim();
 
         try {
-            output = new PrintStream(new FileOutputStream(fileName, true), true);
+            AsyncFileSink sink = new AsyncFileSink(Paths.get(fileName), OUTPUT_ROTATE_BYTES, OUTPUT_ROTATE_SECONDS * 1000);
+            replaceOutput(new PrintStream(sink, false));
             System.out.println("Output redirected to file: " + fileName);
-        } catch (FileNotFoundException e) {
+        } catch (IOException | InvalidPathException e) {
             System.out.println("Error redirecting output: " + e.getMessage());
-            output = System.out;
+            replaceOutput(System.out);
         }
     }
 
     private void resetOutputToConsole() {
-        output = System.out;
-        output.println("Output redirected back to console.");
+        replaceOutput(System.out);
+        session.getOutput().println("Output redirected back to console.");
     }
 
-    private void printNotifications() {
-        if (currentUser != null) {
-            String notification = currentUser.getLastNotification();
-            if (notification != null) {
-                output.println(notification);
+    // Closing a file sink waits until its buffered output is on disk.
+    private void replaceOutput(PrintStream output) {
+        PrintStream previous = session.getOutput();
+        session.setOutput(output);
+        if (previous != System.out && previous != output) {
+            previous.close();
+            if (previous.checkError()) {
+                System.out.println("Error writing redirected output.");
             }
+        }
+    }
 
-            checkNegativeBalance();
-
-            notification = currentUser.getLastNotification();
-            if (notification != null) {
-                output.println(notification);
+    // Alerts are raised by the wallet as thresholds are crossed; this only shows the queued ones.
+    private void printNotifications() {
+        if (session.isLoggedIn()) {
+            for (String notification : session.getUser().drainNotifications()) {
+                session.getOutput().println(notification);
             }
         }
     }
@@ -130,20 +499,7 @@ public class FinanceManager {
         System.out.print("Enter password: ");
         String password = scanner.nextLine().trim();
 
-        if (username.isEmpty() || password.isEmpty()) {
-            System.out.println("Username and password cannot be empty.");
-            return;
-        }
-
-        if (users.containsKey(username)) {
-            System.out.println("User already exists!");
-            return;
-        }
-
-        User newUser = new User(username, password);
-        users.put(username, newUser);
-        currentUser = newUser;
-        System.out.println("User registered and logged in successfully!");
+        System.out.println(register(session, username, password).message());
     }
 
     private void loginUser() {
@@ -152,125 +508,534 @@ public class FinanceManager {
         System.out.print("Enter password: ");
         String password = scanner.nextLine().trim();
 
-        User user = users.get(username);
-        if (user != null && user.authenticate(password)) {
-            currentUser = user;
-            System.out.println("Logged in as " + username);
-        } else {
-            System.out.println("Invalid username or password.");
-        }
+        System.out.println(login(session, username, password).message());
     }
 
     private void addExpense() {
-        if (currentUser == null) {
+        if (!session.isLoggedIn()) {
             System.out.println("You need to log in first.");
             return;
         }
 
         System.out.print("Enter category name: ");
         String categoryName = scanner.nextLine().trim();
-        System.out.print("Enter amount: ");
-        double amount = getValidAmount();
+        System.out.print("Enter amount (optionally with a currency code, e.g. 12.50 EUR): ");
+        Amount amount = getValidAmountWithCurrency();
+        System.out.print("Enter date (YYYY-MM-DD, empty for now): ");
+        LocalDate date = getValidDate(true);
 
-        if (categoryName.isEmpty()) {
-            System.out.println("Category name cannot be empty.");
+        long timestamp = date == null ? System.currentTimeMillis() : Transaction.timestampOf(date);
+        System.out.println(addTransaction(session, new Transaction(categoryName, amount.cents(), true, timestamp, amount.currency())).message());
+    }
+
+    private void addIncome() {
+        if (!session.isLoggedIn()) {
+            System.out.println("You need to log in first.");
             return;
         }
 
-        Transaction transaction = new Transaction(categoryName, amount, true);
-        addTransactionToWallet(transaction);
-        checkBudgetExceedance(transaction);
+        System.out.print("Enter category name: ");
+        String categoryName = scanner.nextLine().trim();
+        System.out.print("Enter amount (optionally with a currency code, e.g. 12.50 EUR): ");
+        Amount amount = getValidAmountWithCurrency();
+        System.out.print("Enter date (YYYY-MM-DD, empty for now): ");
+        LocalDate date = getValidDate(true);
+
+        long timestamp = date == null ? System.currentTimeMillis() : Transaction.timestampOf(date);
+        System.out.println(addTransaction(session, new Transaction(categoryName, amount.cents(), false, timestamp, amount.currency())).message());
+    }
+
+    private void setBudget() {
+        if (!session.isLoggedIn()) {
+            System.out.println("You need to log in first.");
+            return;
+        }
+
+        System.out.print("Enter category name: ");
+        String categoryName = scanner.nextLine().trim();
+        System.out.print("Enter budget amount: ");
+        long budget = getValidAmount();
+
+        System.out.println(setBudget(session, categoryName, budget).message());
+    }
+
+    // Core operations shared by the interactive menu and the batch runner. They never prompt;
+    // the outcome carries the message the menu prints.
+    record Outcome(boolean success, String message) {
+        static Outcome ok(String message) {
+            return new Outcome(true, message);
+        }
+
+        static Outcome error(String message) {
+            return new Outcome(false, message);
+        }
+    }
+
+    // A change is reported once its journal record is durable. Under ALWAYS that wait happens
+    // here, after the wallet lock is released, so sessions writing at once share one fsync.
+    private Outcome durable(Outcome outcome) {
+        try {
+            if (journal != null) {
+                journal.awaitAppended();
+            }
+            return outcome;
+        } catch (IOException e) {
+            return Outcome.error("Error writing journal: " + e.getMessage());
+        }
+    }
+
+    Outcome register(Session session, String username, String password) {
+        if (username.isEmpty() || password.isEmpty()) {
+            return Outcome.error("Username and password cannot be empty.");
+        }
+
+        User newUser;
+        try {
+            newUser = registry.register(username, password);
+        } catch (IOException e) {
+            return Outcome.error("Error writing journal: " + e.getMessage());
+        }
+        if (newUser == null) {
+            return Outcome.error("User already exists!");
+        }
+
+        registry.release(session.login(newUser));
+        return durable(Outcome.ok("User registered and logged in successfully!"));
+    }
+
+    Outcome login(Session session, String username, String password) {
+        User user = registry.acquire(username);
+        if (user != null && user.authenticate(password)) {
+            registry.release(session.login(user));
+            return Outcome.ok("Logged in as " + username);
+        }
+
+        registry.release(user);
+        return Outcome.error("Invalid username or password.");
+    }
+
+    void logout(Session session) {
+        registry.release(session.login(null));
+    }
+
+    Outcome addTransaction(Session session, Transaction transaction) {
+        if (!session.isLoggedIn()) {
+            return Outcome.error("You need to log in first.");
+        }
+
+        if (transaction.getName().isEmpty()) {
+            return Outcome.error("Category name cannot be empty.");
+        }
+
+        try {
+            if (!session.getUser().getWallet().addTransactionCreatingCategory(transaction)) {
+                return Outcome.error(transaction.isExpense()
+                        ? "Error: Transaction type (Expense) does not match category type (Income)."
+                        : "Error: Transaction type (Income) does not match category type (Expense).");
+            }
+        } catch (IllegalStateException e) {
+            return Outcome.error("Error: " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            return Outcome.error("Error writing journal: " + e.getMessage());
+        }
+
+        if (!ExchangeRates.current().has(transaction.getCurrency())) {
+            return durable(Outcome.ok("Transaction added successfully! There is no exchange rate for " + transaction.getCurrency()
+                    + " yet, so it is left out of totals until " + RATES_FILE + " has one."));
+        }
+        return durable(Outcome.ok("Transaction added successfully!"));
+    }
+
+    Outcome setBalanceFloor(Session session, long floor) {
+        if (!session.isLoggedIn()) {
+            return Outcome.error("You need to log in first.");
+        }
+
+        try {
+            session.getUser().getWallet().setBalanceFloor(floor);
+        } catch (UncheckedIOException e) {
+            return Outcome.error("Error writing journal: " + e.getMessage());
+        }
+        return durable(Outcome.ok(floor == 0 ? "Balance floor cleared." : "Balance floor set to " + Money.format(floor) + "."));
+    }
+
+    Outcome addRecurring(Session session, RecurringTransaction definition) {
+        if (!session.isLoggedIn()) {
+            return Outcome.error("You need to log in first.");
+        }
+
+        if (definition.getCategory().isEmpty()) {
+            return Outcome.error("Category name cannot be empty.");
+        }
+
+        Wallet wallet = session.getUser().getWallet();
+        int booked;
+        try {
+            wallet.addRecurring(definition);
+            booked = wallet.applyRecurring(LocalDate.now().toEpochDay());
+        } catch (Wallet.InvalidCategoryTypeException e) {
+            return Outcome.error(e.getMessage());
+        } catch (UncheckedIOException e) {
+            return Outcome.error("Error writing journal: " + e.getMessage());
+        }
+        return durable(Outcome.ok("Recurring transaction #" + definition.getId() + " added"
+                + (booked > 0 ? ", " + booked + " due occurrences booked." : ".")));
     }
 
-    private void checkBudgetExceedance(Transaction transaction) {
+    Outcome setBudget(Session session, String categoryName, long budget) {
+        if (!session.isLoggedIn()) {
+            return Outcome.error("You need to log in first.");
+        }
+
+        if (categoryName.isEmpty()) {
+            return Outcome.error("Category name cannot be empty.");
+        }
+
         try {
-            Category category = currentUser.getWallet().getCategoryByName(transaction.getName());
+            if (session.getUser().getWallet().setBudgetCreating(categoryName, budget)) {
+                return durable(Outcome.ok("Category not found. New expense category created and budget set successfully!"));
+            }
+            return durable(Outcome.ok("Budget set successfully!"));
+        } catch (Wallet.InvalidCategoryTypeException e) {
+            return Outcome.error("Error: You can't set budget with income category");
+        } catch (UncheckedIOException e) {
+            return Outcome.error("Error writing journal: " + e.getMessage());
+        }
+    }
 
-            if (category instanceof ExpenseCategory) {
-                double remainingBudget = ((ExpenseCategory) category).getBudget() - category.getCurrentAmount();
-                if (remainingBudget < 0) {
-                    currentUser.addNotification("Expense exceeds budget for category: " + category.getName());
+    // Imports with the journal buffered in memory and synced once at the end; a statement of a
+    // million rows would otherwise pay one fsync per row.
+    Outcome importStatement(Session session, Path file) {
+        if (!session.isLoggedIn()) {
+            return Outcome.error("You need to log in first.");
+        }
+
+        CsvImporter.Result result;
+        Journal.FsyncPolicy policy = journal == null ? null : journal.getFsyncPolicy();
+        String journalError = null;
+        try {
+            if (journal != null) {
+                journal.setFsyncPolicy(Journal.FsyncPolicy.MANUAL);
+            }
+            result = new CsvImporter(Runtime.getRuntime().availableProcessors()).importFile(file, session.getUser().getWallet());
+        } catch (IOException e) {
+            return Outcome.error("Error importing statement: " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            return Outcome.error("Error writing journal: " + e.getMessage());
+        } finally {
+            try {
+                if (journal != null) {
+                    journal.setFsyncPolicy(policy);
+                    journal.sync();
                 }
+            } catch (IOException e) {
+                journalError = e.getMessage();
             }
-        } catch (Wallet.CategoryNotFoundException e) {
         }
+        if (journalError != null) {
+            return Outcome.error("Error writing journal: " + journalError);
+        }
+
+        StringBuilder message = new StringBuilder();
+        for (String error : result.errors()) {
+            message.append(error).append('\n');
+        }
+        if (result.failed() > result.errors().size()) {
+            message.append("... ").append(result.failed() - result.errors().size()).append(" more errors\n");
+        }
+        message.append("Imported ").append(result.imported()).append(" transactions, ")
+                .append(result.failed()).append(" rows failed, in ").append(result.elapsedMillis()).append(" ms.");
+        return new Outcome(result.failed() == 0, message.toString());
     }
 
-    private void checkNegativeBalance() {
-        if (currentUser != null && currentUser.getWallet().getTotalBalanceRaw() < 0) {
-            currentUser.addNotification("Warning: Your total balance is negative.");
+    // Totals, categories and the full history, streamed from a snapshot so the wallet stays
+    // writable during a long export.
+    Outcome exportReport(Session session, String format, Path file) {
+        if (!session.isLoggedIn()) {
+            return Outcome.error("You need to log in first.");
+        }
+
+        ReportEvent event = new ReportEvent();
+        event.begin();
+        long started = Metrics.start();
+        Wallet wallet = session.getUser().getWallet();
+        WalletSummary summary = wallet.getSummary();
+        TransactionStore transactions = wallet.snapshotTransactions();
+        try (ReportWriter writer = ReportWriter.create(format, FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), true)) {
+            writer.write(summary);
+            writer.write(transactions);
+        } catch (IOException | IllegalArgumentException e) {
+            return Outcome.error("Error exporting report: " + e.getMessage());
         }
+        EXPORT.stop(started);
+        if (event.shouldCommit()) {
+            event.username = session.getUser().getUsername();
+            event.format = format;
+            event.transactions = transactions.size();
+            event.file = file.toString();
+            event.commit();
+        }
+        return Outcome.ok("Exported " + transactions.size() + " transactions to " + file);
     }
 
-    private void addIncome() {
-        if (currentUser == null) {
+    private void importStatement() {
+        if (!session.isLoggedIn()) {
             System.out.println("You need to log in first.");
             return;
         }
 
-        System.out.print("Enter category name: ");
-        String categoryName = scanner.nextLine().trim();
-        System.out.print("Enter amount: ");
-        double amount = getValidAmount();
+        System.out.print("Enter CSV file name (date,category,amount): ");
+        String fileName = scanner.nextLine().trim();
+        System.out.println(importStatement(session, Paths.get(fileName)).message());
+    }
 
-        if (categoryName.isEmpty()) {
-            System.out.println("Category name cannot be empty.");
+    private void setBalanceFloor() {
+        if (!session.isLoggedIn()) {
+            System.out.println("You need to log in first.");
             return;
         }
 
-        Transaction transaction = new Transaction(categoryName, amount, false);
-        addTransactionToWallet(transaction);
+        System.out.print("Enter balance floor (0 to clear): ");
+        long floor = getValidAmount();
+        System.out.println(setBalanceFloor(session, floor).message());
     }
 
-    private void setBudget() {
-        if (currentUser == null) {
+    private void showNotificationHistory() {
+        if (!session.isLoggedIn()) {
             System.out.println("You need to log in first.");
             return;
         }
 
+        final int pageSize = 10;
+        int page = 0;
+        while (true) {
+            List<NotificationLog.Notification> notifications = session.getUser().getNotifications(page, pageSize);
+            if (notifications.isEmpty()) {
+                session.getOutput().println(page == 0 ? "No notifications." : "No more notifications.");
+                return;
+            }
+            for (NotificationLog.Notification notification : notifications) {
+                session.getOutput().println(notification);
+            }
+            if (notifications.size() < pageSize) {
+                return;
+            }
+            System.out.print("Show older notifications? (y/n): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                return;
+            }
+            page++;
+        }
+    }
+
+    private void addRecurring() {
+        if (!session.isLoggedIn()) {
+            System.out.println("You need to log in first.");
+            return;
+        }
+
+        System.out.print("Is it an expense or an income? (e/i): ");
+        boolean isExpense = !scanner.nextLine().trim().toLowerCase().startsWith("i");
         System.out.print("Enter category name: ");
         String categoryName = scanner.nextLine().trim();
-        System.out.print("Enter budget amount: ");
-        double budget = getValidAmount();
+        System.out.print("Enter amount: ");
+        long amount = getValidAmount();
+        System.out.print("How often? (daily/weekly/monthly/yearly): ");
+        RecurringTransaction.Frequency frequency;
+        try {
+            frequency = RecurringTransaction.Frequency.valueOf(scanner.nextLine().trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid frequency.");
+            return;
+        }
+        System.out.print("Enter first date (YYYY-MM-DD, empty for today): ");
+        LocalDate start = getValidDate(true);
 
-        if (categoryName.isEmpty()) {
-            System.out.println("Category name cannot be empty.");
+        RecurringTransaction definition = new RecurringTransaction(categoryName, amount, isExpense, frequency,
+                start == null ? LocalDate.now() : start);
+        System.out.println(addRecurring(session, definition).message());
+    }
+
+    private void listRecurring() {
+        if (!session.isLoggedIn()) {
+            System.out.println("You need to log in first.");
             return;
         }
 
+        List<RecurringTransaction> recurring = session.getUser().getWallet().getRecurring();
+        if (recurring.isEmpty()) {
+            session.getOutput().println("No recurring transactions.");
+            return;
+        }
+        for (RecurringTransaction definition : recurring) {
+            session.getOutput().println(definition);
+        }
+    }
+
+    private void removeRecurring() {
+        if (!session.isLoggedIn()) {
+            System.out.println("You need to log in first.");
+            return;
+        }
+
+        System.out.print("Enter recurring transaction number: ");
         try {
-            Category category = currentUser.getWallet().getCategoryByName(categoryName);
-            if (category instanceof IncomeCategory) {
-                System.out.println("Error: You can't set budget with income category");
+            int id = Integer.parseInt(scanner.nextLine().trim().replace("#", ""));
+            boolean removed = session.getUser().getWallet().removeRecurring(id);
+            System.out.println(removed ? durable(Outcome.ok("Recurring transaction removed.")).message() : "No recurring transaction #" + id + ".");
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number.");
+        } catch (UncheckedIOException e) {
+            System.out.println("Error writing journal: " + e.getMessage());
+        }
+    }
+
+    private void browseHistory() {
+        if (!session.isLoggedIn()) {
+            System.out.println("You need to log in first.");
+            return;
+        }
+
+        TransactionQuery query = new TransactionQuery().newestFirst();
+        System.out.print("Enter category name (empty for all): ");
+        String categoryName = scanner.nextLine().trim();
+        if (!categoryName.isEmpty()) {
+            query.category(categoryName);
+        }
+        System.out.print("Show expenses, income or both? (e/i/b): ");
+        String type = scanner.nextLine().trim().toLowerCase();
+        if (type.startsWith("e")) {
+            query.expenses();
+        } else if (type.startsWith("i")) {
+            query.income();
+        }
+        System.out.print("Enter minimum amount (empty for none): ");
+        Long min = getOptionalAmount();
+        if (min != null) {
+            query.minAmount(min);
+        }
+        System.out.print("Enter maximum amount (empty for none): ");
+        Long max = getOptionalAmount();
+        if (max != null) {
+            query.maxAmount(max);
+        }
+
+        // One snapshot for the whole session, so paging is not disturbed by new transactions.
+        TransactionStore history = session.getUser().getWallet().snapshotTransactions();
+        final int pageSize = 20;
+        int cursor = 0;
+        boolean first = true;
+        while (true) {
+            TransactionQuery.Page page = query.page(history, cursor, pageSize);
+            if (first && page.items().isEmpty()) {
+                session.getOutput().println("No matching transactions.");
                 return;
             }
-            ((ExpenseCategory) category).setBudget(budget);
-            System.out.println("Budget set successfully!");
-        } catch (Wallet.CategoryNotFoundException e) {
-            Category category = new ExpenseCategory(categoryName, budget);
-            currentUser.getWallet().addCategory(category);
-            System.out.println("Category not found. New expense category created and budget set successfully!");
+            first = false;
+            printTransactions(page.items());
+            if (page.nextCursor() < 0) {
+                return;
+            }
+            System.out.print("Show older transactions? (y/n): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                return;
+            }
+            cursor = page.nextCursor();
         }
     }
 
+    private void showLargestExpenses() {
+        if (!session.isLoggedIn()) {
+            System.out.println("You need to log in first.");
+            return;
+        }
+
+        System.out.print("How many expenses to show: ");
+        int count;
+        try {
+            count = Integer.parseInt(scanner.nextLine().trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number.");
+            return;
+        }
+        if (count <= 0) {
+            System.out.println("Invalid number.");
+            return;
+        }
+        TransactionStore history = session.getUser().getWallet().snapshotTransactions();
+        List<Transaction> largest = new TransactionQuery().expenses().top(history, count, TransactionQuery.Order.AMOUNT);
+        if (largest.isEmpty()) {
+            session.getOutput().println("No expenses.");
+            return;
+        }
+        printTransactions(largest);
+    }
+
+    private void printTransactions(List<Transaction> transactions) {
+        StringBuilder output = new StringBuilder();
+        for (Transaction transaction : transactions) {
+            output.append(transaction.getTimestamp() == Transaction.UNDATED
+                            ? "(no date)  " : LocalDate.ofEpochDay(Transaction.dayOf(transaction.getTimestamp())) + "  ")
+                    .append(transaction.isExpense() ? "-" : "+")
+                    .append(Money.format(transaction.getAmount()))
+                    .append(transaction.getCurrency() == null ? "" : " " + transaction.getCurrency())
+                    .append("  ")
+                    .append(transaction.getName())
+                    .append(System.lineSeparator());
+        }
+        session.getOutput().print(output);
+    }
+
+    private void showMetrics() {
+        session.getOutput().print(Metrics.report());
+    }
+
+    private void reloadRates() {
+        if (!Files.exists(Paths.get(RATES_FILE))) {
+            System.out.println("No " + RATES_FILE + " found; add lines such as \"EUR 1.08\" giving the value of one unit in "
+                    + ExchangeRates.HOME + ".");
+            return;
+        }
+        if (loadRates(false) < 0) {
+            return;
+        }
+        for (Map.Entry<String, Double> rate : ExchangeRates.current().asMap().entrySet()) {
+            System.out.println(rate.getKey() + " " + rate.getValue());
+        }
+    }
+
+    private void exportReport() {
+        if (!session.isLoggedIn()) {
+            System.out.println("You need to log in first.");
+            return;
+        }
+
+        System.out.print("Enter format (text, jsonl, binary): ");
+        String format = scanner.nextLine().trim();
+        System.out.print("Enter file name: ");
+        String fileName = scanner.nextLine().trim();
+        System.out.println(exportReport(session, format, Paths.get(fileName)).message());
+    }
+
     private void getTotalIncome() {
-        if (currentUser != null) {
-            output.println(currentUser.getWallet().getTotalIncome());
+        if (session.isLoggedIn()) {
+            session.getOutput().println(session.getUser().getWallet().getTotalIncome());
         } else {
             System.out.println("You need to log in first.");
         }
     }
 
     private void getTotalExpenses() {
-        if (currentUser != null) {
-            output.println(currentUser.getWallet().getTotalExpenses());
+        if (session.isLoggedIn()) {
+            session.getOutput().println(session.getUser().getWallet().getTotalExpenses());
         } else {
             System.out.println("You need to log in first.");
         }
     }
 
     private void getIncomeByCategory() {
-        if (currentUser == null) {
+        if (!session.isLoggedIn()) {
             System.out.println("You need to log in first.");
             return;
         }
@@ -278,40 +1043,18 @@ public class FinanceManager {
         System.out.print("Enter category name: ");
         String categoryName = scanner.nextLine().trim();
         try {
-            output.println(currentUser.getWallet().getIncomeByCategory(categoryName));
+            session.getOutput().println(session.getUser().getWallet().getIncomeByCategory(categoryName));
         } catch (Wallet.CategoryNotFoundException | Wallet.InvalidCategoryTypeException e) {
             System.out.println(e.getMessage());
         }
     }
 
     private void getIncomeByCategories() {
-        if (currentUser == null) {
-            System.out.println("You need to log in first.");
-            return;
-        }
-
-        System.out.print("Enter category names (semicolon-separated): ");
-        String input = scanner.nextLine().trim();
-
-        if (input.isEmpty()) {
-            System.out.println("Category names cannot be empty.");
-            return;
-        }
-
-        String[] categoryNames = input.split(";");
-
-        for (String categoryName : categoryNames) {
-            try {
-                String income = currentUser.getWallet().getIncomeByCategory(categoryName);
-                output.println("Income for category '" + categoryName + "': " + income);
-            } catch (Wallet.CategoryNotFoundException | Wallet.InvalidCategoryTypeException e) {
-                output.println("Error for category '" + categoryName + "': " + e.getMessage());
-            }
-        }
+        printCategoryQuery(false);
     }
 
     private void getExpensesByCategory() {
-        if (currentUser == null) {
+        if (!session.isLoggedIn()) {
             System.out.println("You need to log in first.");
             return;
         }
@@ -319,14 +1062,19 @@ public class FinanceManager {
         System.out.print("Enter category name: ");
         String categoryName = scanner.nextLine().trim();
         try {
-            output.println(currentUser.getWallet().getExpenseByCategory(categoryName));
+            session.getOutput().println(session.getUser().getWallet().getExpenseByCategory(categoryName));
         } catch (Wallet.CategoryNotFoundException | Wallet.InvalidCategoryTypeException e) {
             System.out.println(e.getMessage());
         }
     }
 
     private void getExpensesByCategories() {
-        if (currentUser == null) {
+        printCategoryQuery(true);
+    }
+
+    // Answers the whole list with one wallet lookup and prints it as one block.
+    private void printCategoryQuery(boolean expenses) {
+        if (!session.isLoggedIn()) {
             System.out.println("You need to log in first.");
             return;
         }
@@ -339,84 +1087,172 @@ public class FinanceManager {
             return;
         }
 
-        String[] categoryNames = input.split(";");
-
-        for (String categoryName : categoryNames) {
-            try {
-                String expenses = currentUser.getWallet().getExpenseByCategory(categoryName);
-                output.println("Expenses for category '" + categoryName + "': " + expenses);
-            } catch (Wallet.CategoryNotFoundException | Wallet.InvalidCategoryTypeException e) {
-                output.println("Error for category '" + categoryName + "': " + e.getMessage());
+        List<CategoryResult> results = session.getUser().getWallet().queryCategories(Arrays.asList(input.split(";")), expenses);
+        String type = expenses ? "expense" : "income";
+        StringBuilder output = new StringBuilder();
+        for (CategoryResult result : results) {
+            String name = result.name();
+            switch (result.status()) {
+                case NOT_FOUND:
+                    output.append("Error for category '").append(name).append("': Category not found: ").append(name);
+                    break;
+                case WRONG_TYPE:
+                    output.append("Error for category '").append(name).append("': Category ").append(name)
+                            .append(" is not an ").append(type).append(" category.");
+                    break;
+                default:
+                    if (expenses) {
+                        output.append("Expenses for category '").append(name).append("': Category: ").append(name).append(", Spent: ");
+                        Money.appendTo(output, result.amount());
+                        if (result.budget() > 0) {
+                            Money.appendTo(output.append(", Budget: "), result.budget());
+                            Money.appendTo(output.append(", Remaining: "), result.remaining());
+                        }
+                    } else {
+                        output.append("Income for category '").append(name).append("': Income in category ").append(name).append(": ");
+                        Money.appendTo(output, result.amount());
+                    }
+                    break;
             }
+            output.append(System.lineSeparator());
         }
+        session.getOutput().print(output);
     }
 
-    private void getFullExpenseInfo() {
-        if (currentUser != null) {
-            output.println(currentUser.getWallet().getExpensesByCategories());
-        } else {
+    private void getTotalsForPeriod() {
+        if (!session.isLoggedIn()) {
             System.out.println("You need to log in first.");
+            return;
         }
+
+        System.out.print("Enter start date (YYYY-MM-DD): ");
+        LocalDate from = getValidDate(false);
+        System.out.print("Enter end date (YYYY-MM-DD): ");
+        LocalDate to = getValidDate(false);
+
+        session.getOutput().println(session.getUser().getWallet().getTotalIncome(from, to));
+        session.getOutput().println(session.getUser().getWallet().getTotalExpenses(from, to));
     }
 
-    private void getFullIncomeInfo() {
-        if (currentUser != null) {
-            output.println(currentUser.getWallet().getIncomeByCategories());
-        } else {
+    private void getIncomeByCategoryForPeriod() {
+        if (!session.isLoggedIn()) {
             System.out.println("You need to log in first.");
+            return;
+        }
+
+        System.out.print("Enter category name: ");
+        String categoryName = scanner.nextLine().trim();
+        System.out.print("Enter start date (YYYY-MM-DD): ");
+        LocalDate from = getValidDate(false);
+        System.out.print("Enter end date (YYYY-MM-DD): ");
+        LocalDate to = getValidDate(false);
+        try {
+            session.getOutput().println(session.getUser().getWallet().getIncomeByCategory(categoryName, from, to));
+        } catch (Wallet.CategoryNotFoundException | Wallet.InvalidCategoryTypeException e) {
+            System.out.println(e.getMessage());
         }
     }
 
-    private void addTransactionToWallet(Transaction transaction) {
-        if (currentUser == null) {
+    private void getExpenseByCategoryForPeriod() {
+        if (!session.isLoggedIn()) {
             System.out.println("You need to log in first.");
             return;
         }
 
-        Wallet wallet = currentUser.getWallet();
+        System.out.print("Enter category name: ");
+        String categoryName = scanner.nextLine().trim();
+        System.out.print("Enter start date (YYYY-MM-DD): ");
+        LocalDate from = getValidDate(false);
+        System.out.print("Enter end date (YYYY-MM-DD): ");
+        LocalDate to = getValidDate(false);
         try {
-            Category category = wallet.getCategoryByName(transaction.getName());
-
-
-            if (transaction.isExpense() && !(category instanceof ExpenseCategory)) {
-                System.out.println("Error: Transaction type (Expense) does not match category type (Income).");
-                return;
-            }
-
-            if (!transaction.isExpense() && !(category instanceof IncomeCategory)) {
-                System.out.println("Error: Transaction type (Income) does not match category type (Expense).");
-                return;
-            }
+            session.getOutput().println(session.getUser().getWallet().getExpenseByCategory(categoryName, from, to));
+        } catch (Wallet.CategoryNotFoundException | Wallet.InvalidCategoryTypeException e) {
+            System.out.println(e.getMessage());
+        }
+    }
 
-            wallet.addTransaction(transaction);
-            System.out.println("Transaction added successfully!");
-        } catch (Wallet.CategoryNotFoundException e) {
-            Category category = transaction.isExpense() ?
-                    new ExpenseCategory(transaction.getName(), 0) : new IncomeCategory(transaction.getName());
+    private void getFullExpenseInfo() {
+        if (session.isLoggedIn()) {
+            session.getOutput().println(session.getUser().getWallet().getExpensesByCategories());
+        } else {
+            System.out.println("You need to log in first.");
+        }
+    }
 
-            wallet.addCategory(category);
+    private void getFullIncomeInfo() {
+        if (session.isLoggedIn()) {
+            session.getOutput().println(session.getUser().getWallet().getIncomeByCategories());
+        } else {
+            System.out.println("You need to log in first.");
+        }
+    }
 
+    private long getValidAmount() {
+        while (true) {
             try {
-                wallet.addTransaction(transaction);
-                System.out.println("Transaction added successfully!");
-            } catch (Wallet.CategoryNotFoundException ee) {
-                System.out.println("Error adding transaction: " + ee.getMessage());
+                long amount = Money.parse(scanner.nextLine().trim());
+                if (amount < 0) {
+                    System.out.println("Amount must be positive. Try again.");
+                } else {
+                    return amount;
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid amount. Please enter a valid number.");
             }
         }
     }
 
-    private double getValidAmount() {
+    // An amount optionally followed by a currency code, e.g. "12.50 EUR".
+    private Amount getValidAmountWithCurrency() {
         while (true) {
+            String input = scanner.nextLine().trim();
+            String currency = null;
+            int space = input.lastIndexOf(' ');
+            if (space > 0 && ExchangeRates.isCode(input.substring(space + 1))) {
+                currency = ExchangeRates.normalize(input.substring(space + 1));
+                input = input.substring(0, space).trim();
+            }
             try {
-                double amount = Double.parseDouble(scanner.nextLine().trim());
+                long amount = Money.parse(input);
                 if (amount < 0) {
                     System.out.println("Amount must be positive. Try again.");
                 } else {
-                    return amount;
+                    return new Amount(amount, currency);
                 }
             } catch (NumberFormatException e) {
                 System.out.println("Invalid amount. Please enter a valid number.");
             }
         }
     }
+
+    private Long getOptionalAmount() {
+        while (true) {
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty()) {
+                return null;
+            }
+            try {
+                return Money.parse(input);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid amount. Please enter a valid number.");
+            }
+        }
+    }
+
+    private LocalDate getValidDate(boolean allowEmpty) {
+        while (true) {
+            String input = scanner.nextLine().trim();
+            if (allowEmpty && input.isEmpty()) {
+                return null;
+            }
+            try {
+                return Transaction.checkDate(LocalDate.parse(input));
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid date. Please use the YYYY-MM-DD format.");
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage() + ". Try again.");
+            }
+        }
+    }
 }
@@ -0,0 +1,127 @@
+package service;
+
+import model.Metrics;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Serves the batch command language (see BatchRunner) over TCP, one virtual thread per
+// connection, so many clients can share one JVM. Each request is one line; the reply is the
+// command's report output, then one "! <notification>" line per new alert, then "OK" or
+// "ERR <message>". "quit" closes the connection.
+//
+// A change is acknowledged only once its journal record is on disk. Records are appended to the
+// journal's memory buffer and the reply waits in Journal.awaitDurable, where requests that arrive
+// together are covered by one shared fsync.
+class FinanceServer {
+    private static final int BACKLOG = 1024;
+    // Whole requests as the client sees them, including the wait for the group commit.
+    private static final Metrics.Timer REQUEST = Metrics.timer("server.request");
+
+    private final FinanceManager manager;
+    private final Journal journal;
+    private final InetSocketAddress address;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private ServerSocket server;
+
+    FinanceServer(FinanceManager manager, Journal journal, InetSocketAddress address) {
+        this.manager = manager;
+        this.journal = journal;
+        this.address = address;
+    }
+
+    // Accepts connections until stop() is called.
+    void run() throws IOException {
+        synchronized (this) {
+            server = new ServerSocket();
+            server.bind(address, BACKLOG);
+        }
+        System.out.println("Listening on " + server.getLocalSocketAddress());
+
+        try {
+            while (true) {
+                Socket socket = server.accept();
+                connections.execute(() -> serve(socket));
+            }
+        } catch (IOException e) {
+            if (!server.isClosed()) {
+                throw e;
+            }
+        }
+    }
+
+    // Stops accepting, closes open connections and waits briefly for requests in progress.
+    synchronized void stop() {
+        try {
+            if (server != null) {
+                server.close();
+            }
+        } catch (IOException e) {
+            System.out.println("Error closing server socket: " + e.getMessage());
+        }
+        connections.shutdownNow();
+        try {
+            connections.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void serve(Socket socket) {
+        Session session = null;
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(new BufferedOutputStream(socket.getOutputStream()), false, StandardCharsets.UTF_8)) {
+            socket.setTcpNoDelay(true);
+            session = new Session(out);
+            BatchRunner commands = new BatchRunner(manager, session, out, Integer.MAX_VALUE, true);
+
+            String line;
+            while ((line = in.readLine()) != null && !line.trim().equalsIgnoreCase("quit")) {
+                long started = Metrics.start();
+                long before = journal == null ? 0 : journal.lastSeqAppendedByCurrentThread();
+                String error = commands.execute(line);
+                long appended = journal == null ? 0 : journal.lastSeqAppendedByCurrentThread();
+                if (appended != before) {
+                    error = awaitDurable(appended, error);
+                    manager.compactJournalIfNeeded();
+                }
+
+                if (session.isLoggedIn()) {
+                    for (String notification : session.getUser().drainNotifications()) {
+                        out.print("! ");
+                        out.println(notification);
+                    }
+                }
+                out.println(error == null ? "OK" : "ERR " + error);
+                out.flush();
+                REQUEST.stop(started);
+            }
+        } catch (IOException e) {
+            // The client went away; nothing to answer.
+        } finally {
+            if (session != null) {
+                manager.logout(session);
+            }
+        }
+    }
+
+    private String awaitDurable(long seq, String error) {
+        try {
+            journal.awaitDurable(seq);
+            return error;
+        } catch (IOException e) {
+            return "Error writing journal: " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,521 @@
+package service;
+
+import model.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+// Append-only log of wallet changes made since the last checkpoint.
+// Each record is [length][crc32][payload] so a torn tail left by a crash is detected and dropped on replay.
+// Payloads start with a sequence number that users remember, which makes replay idempotent.
+public class Journal implements Closeable {
+    // ALWAYS only writes each record; the caller waits in awaitAppended, outside the wallet lock,
+    // before it reports the change, so concurrent writers share fsyncs as a group commit.
+    // MANUAL buffers records in memory until sync() is called, for bulk loads that commit explicitly.
+    public enum FsyncPolicy { ALWAYS, BATCH, NEVER, MANUAL }
+
+    private static final byte REGISTER = 1;
+    private static final byte CATEGORY = 2;
+    private static final byte TRANSACTION = 3;
+    private static final byte BUDGET = 4;
+    private static final byte FLOOR = 5;
+    private static final byte RECURRING = 6;
+    private static final byte RECURRING_APPLIED = 7;
+    private static final byte RECURRING_REMOVED = 8;
+    // A TRANSACTION in another currency: the same fields followed by the currency code. Home
+    // currency transactions keep the shorter record.
+    private static final byte FOREIGN_TRANSACTION = 9;
+    private static final int HEADER_SIZE = 8;
+    private static final Metrics.Timer FORCE = Metrics.timer("journal.fsync");
+
+    private final Path path;
+    private FileChannel channel;
+    private FsyncPolicy policy;
+    private final int batchSize;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+    private final DataOutputStream record = new DataOutputStream(buffer);
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private int unsynced;
+    private long lastSeq;
+    // The sequence number of the last record each thread appended, so a server connection can
+    // wait for its own records and not for those of every other connection.
+    private final ThreadLocal<long[]> appendedSeq = ThreadLocal.withInitial(() -> new long[1]);
+    // Group commit state, guarded by groupLock rather than the journal monitor so appends go on
+    // while a force is in progress. A lock and condition do not pin waiting virtual threads.
+    private final ReentrantLock groupLock = new ReentrantLock();
+    private final Condition forced = groupLock.newCondition();
+    private boolean forcing;
+    private long durableSeq;
+
+    public Journal(Path path, FsyncPolicy policy, int batchSize) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.policy = policy;
+        this.batchSize = batchSize;
+
+        if (channel.size() < HEADER_SIZE) {
+            channel.truncate(0);
+            writeHeader();
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            lastSeq = header.flip().getLong();
+        }
+        channel.position(channel.size());
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putLong(0, lastSeq);
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    public synchronized long size() throws IOException {
+        return channel.size() + pending.position();
+    }
+
+    public synchronized FsyncPolicy getFsyncPolicy() {
+        return policy;
+    }
+
+    public synchronized void setFsyncPolicy(FsyncPolicy policy) throws IOException {
+        flushPending();
+        this.policy = policy;
+    }
+
+    public synchronized long lastSeq() {
+        return lastSeq;
+    }
+
+    // The sequence number of the last record appended on the calling thread, or 0 for none.
+    public long lastSeqAppendedByCurrentThread() {
+        return appendedSeq.get()[0];
+    }
+
+    // Applies every record newer than the user's journalSeq, so records already folded into a
+    // stored copy of the user are skipped. Users are resolved lazily through lookup.
+    public int replay(Function<String, User> lookup, Consumer<User> register) throws IOException {
+        channel.position(HEADER_SIZE);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        long validEnd = HEADER_SIZE;
+        int count = 0;
+
+        while (true) {
+            byte[] payload;
+            try {
+                int length = in.readInt();
+                long checksum = in.readInt() & 0xFFFFFFFFL;
+                if (length <= 0 || length > channel.size()) {
+                    break;
+                }
+                payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if (crc.getValue() != checksum) {
+                    break;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+
+            if (apply(new DataInputStream(new ByteArrayInputStream(payload)), lookup, register)) {
+                count++;
+            }
+            validEnd += 8 + payload.length;
+        }
+
+        channel.truncate(validEnd);
+        channel.position(validEnd);
+        return count;
+    }
+
+    private boolean apply(DataInputStream in, Function<String, User> lookup, Consumer<User> register) throws IOException {
+        long seq = in.readLong();
+        byte type = in.readByte();
+        String username = in.readUTF();
+        lastSeq = Math.max(lastSeq, seq);
+
+        User user = lookup.apply(username);
+        if (type == REGISTER) {
+            if (user != null) {
+                return false;
+            }
+            user = new User(username, in.readUTF());
+            user.getWallet().setJournalSeq(seq);
+            register.accept(user);
+            return true;
+        }
+
+        if (user == null || seq <= user.getWallet().getJournalSeq()) {
+            return false;
+        }
+        Wallet wallet = user.getWallet();
+        String name = in.readUTF();
+
+        try {
+            switch (type) {
+                case CATEGORY -> {
+                    boolean expense = in.readBoolean();
+                    long budget = in.readLong();
+                    wallet.addCategory(expense ? new ExpenseCategory(name, budget) : new IncomeCategory(name));
+                }
+                case TRANSACTION -> {
+                    long amount = in.readLong();
+                    boolean expense = in.readBoolean();
+                    long timestamp = in.readLong();
+                    wallet.addTransaction(new Transaction(name, amount, expense, timestamp));
+                }
+                case FOREIGN_TRANSACTION -> {
+                    long amount = in.readLong();
+                    boolean expense = in.readBoolean();
+                    long timestamp = in.readLong();
+                    wallet.addTransaction(new Transaction(name, amount, expense, timestamp, in.readUTF()));
+                }
+                case BUDGET -> {
+                    long budget = in.readLong();
+                    if (wallet.getCategoryByName(name) instanceof ExpenseCategory category) {
+                        category.setBudget(budget);
+                    }
+                }
+                case FLOOR -> wallet.setBalanceFloor(in.readLong());
+                case RECURRING -> {
+                    long amount = in.readLong();
+                    boolean expense = in.readBoolean();
+                    RecurringTransaction.Frequency frequency = RecurringTransaction.Frequency.values()[in.readByte()];
+                    LocalDate start = LocalDate.ofEpochDay(in.readLong());
+                    wallet.addRecurring(new RecurringTransaction(name, amount, expense, frequency, start));
+                }
+                case RECURRING_APPLIED -> {
+                    int id = in.readInt();
+                    wallet.applyRecurring(id, in.readInt());
+                }
+                case RECURRING_REMOVED -> wallet.removeRecurring(in.readInt());
+            }
+        } catch (Wallet.CategoryNotFoundException | Wallet.InvalidCategoryTypeException e) {
+            System.out.println("Skipping journal record: " + e.getMessage());
+        }
+        wallet.setJournalSeq(seq);
+        return true;
+    }
+
+    public synchronized void appendRegister(User user) throws IOException {
+        begin(REGISTER, user.getUsername());
+        record.writeUTF(user.getPassword());
+        user.getWallet().setJournalSeq(commit());
+    }
+
+    // A record that cannot be written is thrown to the wallet as an UncheckedIOException, which
+    // fails the change in progress.
+    public WalletListener listenerFor(User user) {
+        String username = user.getUsername();
+        return new WalletListener() {
+            @Override
+            public void transactionAdded(Transaction transaction) {
+                synchronized (Journal.this) {
+                    try {
+                        begin(transaction.getCurrency() == null ? TRANSACTION : FOREIGN_TRANSACTION, username);
+                        record.writeUTF(transaction.getName());
+                        record.writeLong(transaction.getAmount());
+                        record.writeBoolean(transaction.isExpense());
+                        record.writeLong(transaction.getTimestamp());
+                        if (transaction.getCurrency() != null) {
+                            record.writeUTF(transaction.getCurrency());
+                        }
+                        user.getWallet().setJournalSeq(commit());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e.getMessage(), e);
+                    }
+                }
+            }
+
+            @Override
+            public void categoryAdded(Category category) {
+                synchronized (Journal.this) {
+                    try {
+                        begin(CATEGORY, username);
+                        record.writeUTF(category.getName());
+                        record.writeBoolean(category instanceof ExpenseCategory);
+                        record.writeLong(category instanceof ExpenseCategory e ? e.getBudget() : 0);
+                        user.getWallet().setJournalSeq(commit());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e.getMessage(), e);
+                    }
+                }
+            }
+
+            @Override
+            public void budgetChanged(ExpenseCategory category) {
+                synchronized (Journal.this) {
+                    try {
+                        begin(BUDGET, username);
+                        record.writeUTF(category.getName());
+                        record.writeLong(category.getBudget());
+                        user.getWallet().setJournalSeq(commit());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e.getMessage(), e);
+                    }
+                }
+            }
+
+            @Override
+            public void balanceFloorChanged(long floor) {
+                synchronized (Journal.this) {
+                    try {
+                        begin(FLOOR, username);
+                        record.writeUTF("");
+                        record.writeLong(floor);
+                        user.getWallet().setJournalSeq(commit());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e.getMessage(), e);
+                    }
+                }
+            }
+
+            @Override
+            public void recurringAdded(RecurringTransaction definition) {
+                synchronized (Journal.this) {
+                    try {
+                        begin(RECURRING, username);
+                        record.writeUTF(definition.getCategory());
+                        record.writeLong(definition.getAmount());
+                        record.writeBoolean(definition.isExpense());
+                        record.writeByte(definition.getFrequency().ordinal());
+                        record.writeLong(definition.getStart().toEpochDay());
+                        user.getWallet().setJournalSeq(commit());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e.getMessage(), e);
+                    }
+                }
+            }
+
+            // One record per definition and catch-up: replay regenerates the occurrences.
+            @Override
+            public void recurringApplied(RecurringTransaction definition) {
+                synchronized (Journal.this) {
+                    try {
+                        begin(RECURRING_APPLIED, username);
+                        record.writeUTF("");
+                        record.writeInt(definition.getId());
+                        record.writeInt(definition.getOccurrences());
+                        user.getWallet().setJournalSeq(commit());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e.getMessage(), e);
+                    }
+                }
+            }
+
+            @Override
+            public void recurringRemoved(RecurringTransaction definition) {
+                synchronized (Journal.this) {
+                    try {
+                        begin(RECURRING_REMOVED, username);
+                        record.writeUTF("");
+                        record.writeInt(definition.getId());
+                        user.getWallet().setJournalSeq(commit());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e.getMessage(), e);
+                    }
+                }
+            }
+        };
+    }
+
+    private void begin(byte type, String username) throws IOException {
+        buffer.reset();
+        record.writeLong(++lastSeq);
+        appendedSeq.get()[0] = lastSeq;
+        record.writeByte(type);
+        record.writeUTF(username);
+    }
+
+    private long commit() throws IOException {
+        byte[] payload = buffer.toByteArray();
+        crc.reset();
+        crc.update(payload);
+
+        if (policy == FsyncPolicy.MANUAL && 8 + payload.length <= pending.capacity()) {
+            if (pending.remaining() < 8 + payload.length) {
+                flushPending();
+            }
+            pending.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+            return lastSeq;
+        }
+
+        flushPending();
+        ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        long start = channel.position();
+        try {
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+        } catch (IOException e) {
+            // Cut off whatever part of the record got written, or replay would stop there and
+            // never reach the records appended after it.
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException truncateFailure) {
+                e.addSuppressed(truncateFailure);
+            }
+            throw e;
+        }
+
+        if (policy == FsyncPolicy.BATCH && ++unsynced >= batchSize) {
+            sync();
+        }
+        return lastSeq;
+    }
+
+    private void flushPending() throws IOException {
+        pending.flip();
+        while (pending.hasRemaining()) {
+            channel.write(pending);
+        }
+        pending.clear();
+    }
+
+    public synchronized void sync() throws IOException {
+        flushPending();
+        long started = Metrics.start();
+        channel.force(false);
+        FORCE.stop(started);
+        unsynced = 0;
+    }
+
+    // Group commit: returns once every record up to seq is on disk. One caller at a time forces
+    // the file for everything appended so far while the others wait for it, so concurrent writers
+    // share one fsync per batch instead of paying one each.
+    public void awaitDurable(long seq) throws IOException {
+        groupLock.lock();
+        try {
+            while (durableSeq < seq) {
+                if (forcing) {
+                    forced.awaitUninterruptibly();
+                    continue;
+                }
+
+                forcing = true;
+                long covered = 0;
+                groupLock.unlock();
+                try {
+                    covered = forceAppended();
+                } finally {
+                    groupLock.lock();
+                    forcing = false;
+                    durableSeq = Math.max(durableSeq, covered);
+                    forced.signalAll();
+                }
+            }
+        } finally {
+            groupLock.unlock();
+        }
+    }
+
+    // Under ALWAYS, returns once every record the calling thread appended is on disk; a no-op
+    // under the other policies, which make records durable on their own schedule.
+    public void awaitAppended() throws IOException {
+        if (getFsyncPolicy() == FsyncPolicy.ALWAYS) {
+            awaitDurable(lastSeqAppendedByCurrentThread());
+        }
+    }
+
+    private long forceAppended() throws IOException {
+        FileChannel target;
+        long seq;
+        synchronized (this) {
+            flushPending();
+            target = channel;
+            seq = lastSeq;
+        }
+        long started = Metrics.start();
+        try {
+            target.force(false);
+            FORCE.stop(started);
+        } catch (ClosedChannelException e) {
+            // Replaced by discardThrough or closed, and both force whatever they keep.
+        }
+        return seq;
+    }
+
+    // Drops the records up to and including seq, which a checkpoint has made durable elsewhere.
+    // Records appended while the checkpoint ran are copied into a fresh journal file.
+    public synchronized void discardThrough(long seq) throws IOException {
+        flushPending();
+        if (channel.size() <= HEADER_SIZE) {
+            return;
+        }
+        if (seq >= lastSeq) {
+            truncate();
+            return;
+        }
+
+        long position = HEADER_SIZE;
+        ByteBuffer frame = ByteBuffer.allocate(16);
+        while (position < channel.size()) {
+            frame.clear();
+            channel.read(frame, position);
+            frame.flip();
+            int length = frame.getInt();
+            frame.getInt();
+            if (frame.getLong() > seq) {
+                break;
+            }
+            position += 8 + length;
+        }
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel tail = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putLong(0, seq);
+            while (header.hasRemaining()) {
+                tail.write(header);
+            }
+            long copied = 0;
+            long remaining = channel.size() - position;
+            while (copied < remaining) {
+                copied += channel.transferTo(position + copied, remaining - copied, tail);
+            }
+            tail.force(true);
+        }
+        channel.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        unsynced = 0;
+    }
+
+    // Drops all records; the header keeps the sequence counter so it never goes backwards.
+    public synchronized void truncate() throws IOException {
+        pending.clear();
+        channel.truncate(0);
+        writeHeader();
+        channel.position(HEADER_SIZE);
+        channel.force(true);
+        unsynced = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            flushPending();
+            channel.force(false);
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package service;
+
+import model.CategorySummary;
+import model.Transaction;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+// One JSON object per line, tagged by "type". Amounts are JSON numbers with two fraction digits.
+//
+//   {"type":"totals","income":12.00,"expenses":5.00,"balance":7.00}
+//   {"type":"category","name":"food","kind":"expense","amount":5.00,"budget":20.00,"remaining":15.00}
+//   {"type":"transaction","date":"2025-01-31","category":"food","kind":"expense","amount":5.00}
+//   {"type":"transaction","date":"2025-02-01","category":"travel","kind":"expense","amount":80.00,"currency":"EUR"}
+//
+// Transactions without "currency" are in the home currency; totals and categories always are.
+public class JsonLinesReportWriter extends ReportWriter {
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    public JsonLinesReportWriter(WritableByteChannel channel, boolean closeChannel) {
+        super(channel, closeChannel);
+    }
+
+    @Override
+    protected void writeTotals(long income, long expenses, long balance) throws IOException {
+        putAscii("{\"type\":\"totals\",\"income\":");
+        putMoney(income);
+        putAscii(",\"expenses\":");
+        putMoney(expenses);
+        putAscii(",\"balance\":");
+        putMoney(balance);
+        putAscii("}\n");
+    }
+
+    @Override
+    protected void writeCategory(CategorySummary category) throws IOException {
+        putAscii("{\"type\":\"category\",\"name\":");
+        putString(category.name());
+        putAscii(category.expense() ? ",\"kind\":\"expense\",\"amount\":" : ",\"kind\":\"income\",\"amount\":");
+        putMoney(category.amount());
+        if (category.expense()) {
+            putAscii(",\"budget\":");
+            putMoney(category.budget());
+            putAscii(",\"remaining\":");
+            putMoney(category.remaining());
+        }
+        putAscii("}\n");
+    }
+
+    @Override
+    protected void writeTransaction(String category, long amount, boolean expense, long timestamp, String currency) throws IOException {
+        putAscii("{\"type\":\"transaction\",\"date\":");
+        if (timestamp == Transaction.UNDATED) {
+            putAscii("null");
+        } else {
+            put((byte) '"');
+            putDate(timestamp);
+            put((byte) '"');
+        }
+        putAscii(",\"category\":");
+        putString(category);
+        putAscii(expense ? ",\"kind\":\"expense\",\"amount\":" : ",\"kind\":\"income\",\"amount\":");
+        putMoney(amount);
+        if (currency != null) {
+            putAscii(",\"currency\":\"");
+            putAscii(currency);
+            put((byte) '"');
+        }
+        putAscii("}\n");
+    }
+
+    private void putString(String text) throws IOException {
+        put((byte) '"');
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (codePoint == '"' || codePoint == '\\') {
+                reserve(2).put((byte) '\\').put((byte) codePoint);
+            } else if (codePoint < 0x20) {
+                reserve(6).put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0')
+                        .put(HEX[codePoint >> 4]).put(HEX[codePoint & 0xF]);
+            } else {
+                putCodePoint(codePoint);
+            }
+        }
+        put((byte) '"');
+    }
+}
@@ -0,0 +1,27 @@
+package service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JFR event for loading data: the startup load (store index, migration, journal replay) with
+// username null, or one user's record read from the store on first access.
+@Name("finance.Load")
+@Label("Load")
+@Category({"Finance", "Persistence"})
+@Description("Startup load of the user store and journal, or one user record read from the store")
+class LoadEvent extends Event {
+    @Label("User")
+    String username;
+
+    @Label("Users")
+    int users;
+
+    @Label("Journal Records Replayed")
+    int replayed;
+
+    @Label("Record Bytes")
+    long bytes;
+}
@@ -0,0 +1,288 @@
+package service;
+
+import model.LatencyHistogram;
+import model.Metrics;
+import model.Transaction;
+import model.User;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Synthetic soak test with production-shaped data: users whose transactions fall on categories
+// with Zipf-distributed popularity, driven from several threads through the registry, wallets and
+// journal. Reports load throughput and latency percentiles, the heap held after loading, and how
+// long a full checkpoint, a cold reload and the legacy single-file format take. Everything is
+// written to its own directory, never to the application's data files.
+public class LoadGenerator {
+    private static final String STORE_NAME = "loadgen_users";
+    private static final String JOURNAL_FILE = "loadgen.journal";
+    private static final String LEGACY_FILE = "finance_manager_data.ser";
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    // skew is the Zipf exponent: 0 spreads transactions evenly, 1 and above concentrates them on
+    // a few categories.
+    public record Config(Path directory, int users, int categories, long transactions, double skew, int threads, long seed) {
+    }
+
+    private final Config config;
+    private final double[] popularity;
+    private long journalBytes;
+    private long loadNanos;
+
+    public LoadGenerator(Config config) {
+        this.config = config;
+        this.popularity = zipf(Math.max(1, config.categories()), config.skew());
+    }
+
+    public void run(PrintStream out) throws IOException {
+        Files.createDirectories(config.directory());
+        deleteOutputs();
+        out.println("Generating " + config.transactions() + " transactions for " + config.users() + " users, "
+                + config.categories() + " categories (skew " + config.skew() + "), " + config.threads() + " threads.");
+
+        UserStore store = new UserStore(config.directory(), STORE_NAME);
+        Journal journal = openJournal();
+        UserRegistry registry = new UserRegistry(store, journal, Math.max(1, config.users()));
+        List<User> users = new ArrayList<>(config.users());
+        try {
+            LatencyHistogram latency = load(registry, journal, users);
+            reportLoad(out, latency);
+
+            long started = System.nanoTime();
+            registry.checkpoint();
+            out.println("Checkpoint: " + millisSince(started) + " ms, store " + megabytes(directorySize(STORE_NAME)) + " MB");
+
+            started = System.nanoTime();
+            writeLegacy(users);
+            long saved = millisSince(started);
+            started = System.nanoTime();
+            readLegacy();
+            out.println("Legacy " + LEGACY_FILE + ": save " + saved + " ms, load " + millisSince(started) + " ms, "
+                    + megabytes(Files.size(config.directory().resolve(LEGACY_FILE))) + " MB");
+        } finally {
+            for (User user : users) {
+                registry.release(user);
+            }
+            journal.close();
+            store.close();
+        }
+        users.clear();
+        coldStart(out);
+        if (Metrics.ENABLED) {
+            out.print(Metrics.report());
+        }
+    }
+
+    private LatencyHistogram load(UserRegistry registry, Journal journal, List<User> users) throws IOException {
+        for (int i = 0; i < config.users(); i++) {
+            User user = registry.register("user-" + i, "password");
+            if (user == null) {
+                throw new IOException("User exists: user-" + i);
+            }
+            users.add(user);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, config.threads()));
+        List<Future<LatencyHistogram>> results = new ArrayList<>();
+        long perUser = config.transactions() / Math.max(1, config.users());
+        long extra = config.transactions() % Math.max(1, config.users());
+        long started = System.nanoTime();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            long count = perUser + (i < extra ? 1 : 0);
+            long seed = config.seed() + i;
+            results.add(pool.submit(() -> drive(user, journal, count, seed)));
+        }
+        pool.shutdown();
+
+        LatencyHistogram total = new LatencyHistogram();
+        try {
+            for (Future<LatencyHistogram> result : results) {
+                total.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Load interrupted", e);
+        } catch (ExecutionException e) {
+            pool.shutdownNow();
+            throw new IOException("Load failed: " + e.getCause(), e.getCause());
+        }
+        loadNanos = System.nanoTime() - started;
+        journalBytes = registry.journalSize();
+        return total;
+    }
+
+    // One user's share of the load, through the same calls the menu and batch mode use, so a
+    // transaction's latency includes the wait for its journal record under ALWAYS.
+    private LatencyHistogram drive(User user, Journal journal, long count, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        LatencyHistogram latency = new LatencyHistogram();
+        long now = System.currentTimeMillis();
+        for (long i = 0; i < count; i++) {
+            int category = sample(random.nextDouble());
+            boolean expense = category % 4 != 0;
+            Transaction transaction = new Transaction("category-" + category, 1 + random.nextInt(100_000), expense,
+                    now - random.nextLong(365 * DAY_MILLIS));
+            long started = System.nanoTime();
+            user.getWallet().addTransactionCreatingCategory(transaction);
+            journal.awaitAppended();
+            latency.record(System.nanoTime() - started);
+        }
+        return latency;
+    }
+
+    private void reportLoad(PrintStream out, LatencyHistogram latency) {
+        long millis = Math.max(1, loadNanos / 1_000_000);
+        out.println("Load: " + latency.count() + " transactions in " + millis + " ms, " + latency.count() * 1000 / millis
+                + " tx/s, journal " + megabytes(journalBytes) + " MB");
+        out.println("Latency: p50 " + micros(latency.percentile(50)) + " us, p99 " + micros(latency.percentile(99))
+                + " us, p99.9 " + micros(latency.percentile(99.9)) + " us, max " + micros(latency.max()) + " us");
+
+        long heap = usedHeap();
+        out.println("Heap after load: " + megabytes(heap) + " MB, "
+                + (config.transactions() == 0 ? 0 : heap / config.transactions()) + " bytes per transaction");
+    }
+
+    // Startup as the application does it: index only, then every user loaded on first access.
+    private void coldStart(PrintStream out) throws IOException {
+        long started = System.nanoTime();
+        UserStore store = new UserStore(config.directory(), STORE_NAME);
+        Journal journal = openJournal();
+        UserRegistry registry = new UserRegistry(store, journal, Math.max(1, config.users()));
+        int replayed = registry.recover();
+        long opened = millisSince(started);
+
+        started = System.nanoTime();
+        long transactions = 0;
+        int failed = 0;
+        try {
+            for (String username : registry.usernames()) {
+                User user = registry.acquire(username);
+                if (user == null) {
+                    failed++;
+                    continue;
+                }
+                transactions += user.getWallet().getTransactionStore().size();
+                registry.release(user);
+            }
+        } finally {
+            journal.close();
+            store.close();
+        }
+        out.println("Cold start: index and journal (" + replayed + " records) in " + opened + " ms, "
+                + transactions + " transactions loaded in " + millisSince(started) + " ms"
+                + (failed == 0 ? "" : ", " + failed + " users failed to load"));
+    }
+
+    private Journal openJournal() throws IOException {
+        Journal.FsyncPolicy policy = Journal.FsyncPolicy.valueOf(System.getProperty("finance.journal.fsync", "BATCH").toUpperCase());
+        return new Journal(config.directory().resolve(JOURNAL_FILE), policy, Integer.getInteger("finance.journal.batchSize", 64));
+    }
+
+    private void writeLegacy(List<User> users) throws IOException {
+        Map<String, User> snapshot = new HashMap<>();
+        for (User user : users) {
+            snapshot.put(user.getUsername(), user.snapshot());
+        }
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(config.directory().resolve(LEGACY_FILE)), 64 * 1024))) {
+            out.writeObject(snapshot);
+        }
+    }
+
+    private void readLegacy() throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(
+                Files.newInputStream(config.directory().resolve(LEGACY_FILE)), 64 * 1024))) {
+            in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void deleteOutputs() throws IOException {
+        try (var files = Files.list(config.directory())) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(STORE_NAME) || name.startsWith(JOURNAL_FILE) || name.equals(LEGACY_FILE)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private long directorySize(String prefix) throws IOException {
+        long size = 0;
+        try (var files = Files.list(config.directory())) {
+            for (Path file : files.toList()) {
+                if (file.getFileName().toString().startsWith(prefix)) {
+                    size += Files.size(file);
+                }
+            }
+        }
+        return size;
+    }
+
+    // Category index for a uniform sample, by binary search over the cumulative popularity.
+    private int sample(double uniform) {
+        int low = 0;
+        int high = popularity.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (popularity[mid] < uniform) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Cumulative distribution where rank k has weight 1 / (k + 1)^skew.
+    private static double[] zipf(int categories, double skew) {
+        double[] cumulative = new double[categories];
+        double sum = 0;
+        for (int k = 0; k < categories; k++) {
+            sum += 1 / Math.pow(k + 1, skew);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < categories; k++) {
+            cumulative[k] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long millisSince(long startedNanos) {
+        return (System.nanoTime() - startedNanos) / 1_000_000;
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%.1f", bytes / (1024.0 * 1024.0));
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.1f", nanos / 1000.0);
+    }
+}
@@ -0,0 +1,42 @@
+package service;
+
+import model.User;
+
+import java.time.LocalDate;
+
+// Books the recurring transactions that have come due, for every user, in one pass. Only users
+// the registry reports as due are loaded, and each wallet catches up all of its missed periods
+// in a single batch however long the application was down.
+public class RecurringScheduler {
+    public record Result(int users, int transactions, long elapsedMillis) {
+    }
+
+    private final UserRegistry registry;
+
+    public RecurringScheduler(UserRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Result catchUp(LocalDate today) {
+        long started = System.nanoTime();
+        long day = today.toEpochDay();
+        int users = 0;
+        int transactions = 0;
+        for (String username : registry.usernamesDueBy(day)) {
+            User user = registry.acquire(username);
+            if (user == null) {
+                continue;
+            }
+            try {
+                int added = user.getWallet().applyRecurring(day);
+                if (added > 0) {
+                    users++;
+                    transactions += added;
+                }
+            } finally {
+                registry.release(user);
+            }
+        }
+        return new Result(users, transactions, (System.nanoTime() - started) / 1_000_000);
+    }
+}
@@ -0,0 +1,26 @@
+package service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JFR event for writing one report file: an export or a user's statement.
+@Name("finance.Report")
+@Label("Report")
+@Category({"Finance", "Reports"})
+@Description("Report or statement written to a file")
+class ReportEvent extends Event {
+    @Label("User")
+    String username;
+
+    @Label("Format")
+    String format;
+
+    @Label("Transactions")
+    int transactions;
+
+    @Label("File")
+    String file;
+}
@@ -0,0 +1,171 @@
+package service;
+
+import model.CategorySummary;
+import model.TransactionStore;
+import model.WalletSummary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+// Streams typed reports to a channel. Subclasses encode fields straight into one reusable byte
+// buffer that is drained to the channel when full, so no per-line strings are assembled.
+public abstract class ReportWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final boolean closeChannel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] digits = new byte[20];
+
+    protected ReportWriter(WritableByteChannel channel, boolean closeChannel) {
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+    }
+
+    public static ReportWriter create(String format, WritableByteChannel channel, boolean closeChannel) {
+        switch (format.toLowerCase()) {
+            case "text": return new TextReportWriter(channel, closeChannel);
+            case "jsonl": return new JsonLinesReportWriter(channel, closeChannel);
+            case "binary": return new BinaryReportWriter(channel, closeChannel);
+            default: throw new IllegalArgumentException("Unknown report format: " + format + " (expected text, jsonl or binary)");
+        }
+    }
+
+    public void write(WalletSummary summary) throws IOException {
+        writeTotals(summary.income(), summary.expenses(), summary.balance());
+        for (CategorySummary category : summary.categories()) {
+            writeCategory(category);
+        }
+    }
+
+    // Reads the columns directly; pass a snapshot if the wallet may change meanwhile.
+    public void write(TransactionStore transactions) throws IOException {
+        for (int i = 0; i < transactions.size(); i++) {
+            writeTransaction(transactions.getCategoryName(transactions.getCategoryId(i)), transactions.getAmount(i),
+                    transactions.isExpense(i), transactions.getTimestamp(i), transactions.getCurrency(transactions.getCurrencyId(i)));
+        }
+    }
+
+    protected abstract void writeTotals(long income, long expenses, long balance) throws IOException;
+
+    protected abstract void writeCategory(CategorySummary category) throws IOException;
+
+    // currency is null for the home currency.
+    protected abstract void writeTransaction(String category, long amount, boolean expense, long timestamp, String currency) throws IOException;
+
+    protected ByteBuffer reserve(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+        return buffer;
+    }
+
+    protected void put(byte value) throws IOException {
+        reserve(1).put(value);
+    }
+
+    protected void putBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            ByteBuffer out = reserve(1);
+            int count = Math.min(out.remaining(), bytes.length - offset);
+            out.put(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    protected void putAscii(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            put((byte) text.charAt(i));
+        }
+    }
+
+    protected void putCodePoint(int codePoint) throws IOException {
+        ByteBuffer out = reserve(4);
+        if (codePoint < 0x80) {
+            out.put((byte) codePoint);
+        } else if (codePoint < 0x800) {
+            out.put((byte) (0xC0 | codePoint >> 6)).put((byte) (0x80 | codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            out.put((byte) (0xE0 | codePoint >> 12)).put((byte) (0x80 | codePoint >> 6 & 0x3F)).put((byte) (0x80 | codePoint & 0x3F));
+        } else {
+            out.put((byte) (0xF0 | codePoint >> 18)).put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                    .put((byte) (0x80 | codePoint >> 6 & 0x3F)).put((byte) (0x80 | codePoint & 0x3F));
+        }
+    }
+
+    protected void putUtf8(String text) throws IOException {
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            putCodePoint(codePoint);
+            i += Character.charCount(codePoint);
+        }
+    }
+
+    protected void putDecimal(long value) throws IOException {
+        if (value < 0) {
+            put((byte) '-');
+        }
+        int count = 0;
+        long rest = value;
+        do {
+            digits[count++] = (byte) ('0' + Math.abs(rest % 10));
+            rest /= 10;
+        } while (rest != 0);
+        ByteBuffer out = reserve(count);
+        while (count > 0) {
+            out.put(digits[--count]);
+        }
+    }
+
+    // Cents as a plain decimal with two fraction digits, the same text Money.format produces.
+    protected void putMoney(long cents) throws IOException {
+        if (cents < 0) {
+            put((byte) '-');
+        }
+        // Unsigned, as in Money.appendTo, so Long.MIN_VALUE keeps its magnitude.
+        long abs = cents < 0 ? -cents : cents;
+        putDecimal(Long.divideUnsigned(abs, 100));
+        long fraction = Long.remainderUnsigned(abs, 100);
+        reserve(3).put((byte) '.').put((byte) ('0' + fraction / 10)).put((byte) ('0' + fraction % 10));
+    }
+
+    // YYYY-MM-DD for a UTC epoch-millisecond timestamp, computed without allocating a LocalDate.
+    protected void putDate(long timestamp) throws IOException {
+        long days = Math.floorDiv(timestamp, 86_400_000L) + 719_468;
+        long era = Math.floorDiv(days, 146_097);
+        long dayOfEra = days - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        long month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        putDecimal(year);
+        reserve(6).put((byte) '-').put((byte) ('0' + month / 10)).put((byte) ('0' + month % 10))
+                .put((byte) '-').put((byte) ('0' + day / 10)).put((byte) ('0' + day % 10));
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public void flush() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (closeChannel) {
+            channel.close();
+        }
+    }
+}
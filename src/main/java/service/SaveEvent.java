@@ -0,0 +1,20 @@
+package service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JFR event for a checkpoint: changed users written to the store and the journal trimmed.
+@Name("finance.Save")
+@Label("Save")
+@Category({"Finance", "Persistence"})
+@Description("Checkpoint of changed users into the store")
+class SaveEvent extends Event {
+    @Label("Users Written")
+    int users;
+
+    @Label("Bytes Written")
+    long bytes;
+}
@@ -0,0 +1,38 @@
+package service;
+
+import model.User;
+
+import java.io.PrintStream;
+
+// State of one connected user: who is logged in and where their reports go.
+public class Session {
+    private User user;
+    private PrintStream output;
+
+    public Session(PrintStream output) {
+        this.output = output;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public boolean isLoggedIn() {
+        return user != null;
+    }
+
+    // Switches the session to another user and returns the one it held before.
+    public User login(User user) {
+        User previous = this.user;
+        this.user = user;
+        return previous;
+    }
+
+    public PrintStream getOutput() {
+        return output;
+    }
+
+    public void setOutput(PrintStream output) {
+        this.output = output;
+    }
+}
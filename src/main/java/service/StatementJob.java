@@ -0,0 +1,131 @@
+package service;
+
+import model.Metrics;
+import model.User;
+import model.WalletSummary;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Writes one statement per user into a directory, fanning the users out over a fork-join pool.
+// Each statement is the user's income/expense breakdown, for all time or for [from, to].
+public class StatementJob {
+    public record Result(int users, int failed, long elapsedMillis) {
+    }
+
+    private static final Metrics.Timer STATEMENT = Metrics.timer("report.statement");
+
+    private final UserRegistry registry;
+    private final Path directory;
+    private final String format;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final int parallelism;
+
+    // from and to may both be null for all-time statements.
+    public StatementJob(UserRegistry registry, Path directory, String format, LocalDate from, LocalDate to, int parallelism) {
+        this.registry = registry;
+        this.directory = directory;
+        this.format = format;
+        this.from = from;
+        this.to = to;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public Result run(PrintStream progress) throws IOException {
+        String extension = extensionOf(format);
+        Files.createDirectories(directory);
+        List<String> usernames = List.copyOf(registry.usernames());
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long started = System.nanoTime();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        for (String username : usernames) {
+            pool.execute(() -> {
+                try {
+                    writeStatement(username, directory.resolve(fileNameOf(username) + extension));
+                } catch (IOException | RuntimeException e) {
+                    failed.incrementAndGet();
+                    progress.println("Error writing statement for " + username + ": " + e.getMessage());
+                }
+                done.incrementAndGet();
+            });
+        }
+        pool.shutdown();
+
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                report(progress, done.get(), usernames.size(), started);
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Statement job interrupted", e);
+        }
+        report(progress, done.get(), usernames.size(), started);
+        return new Result(usernames.size(), failed.get(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void writeStatement(String username, Path file) throws IOException {
+        ReportEvent event = new ReportEvent();
+        event.begin();
+        long started = Metrics.start();
+        User user = registry.peek(username);
+        if (user == null) {
+            throw new IOException("User not found");
+        }
+
+        WalletSummary summary = from == null ? user.getWallet().getSummary() : user.getWallet().getSummary(from, to);
+        try (ReportWriter writer = ReportWriter.create(format, FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), true)) {
+            writer.write(summary);
+        }
+        STATEMENT.stop(started);
+        if (event.shouldCommit()) {
+            event.username = username;
+            event.format = format;
+            event.file = file.toString();
+            event.commit();
+        }
+    }
+
+    private static void report(PrintStream progress, int done, int total, long started) {
+        long elapsedMillis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        progress.println("Statements: " + done + "/" + total + " users, " + (done * 1000L / elapsedMillis) + " users/s");
+    }
+
+    private static String extensionOf(String format) {
+        switch (format.toLowerCase()) {
+            case "text": return ".txt";
+            case "jsonl": return ".jsonl";
+            case "binary": return ".bin";
+            default: throw new IllegalArgumentException("Unknown report format: " + format + " (expected text, jsonl or binary)");
+        }
+    }
+
+    // Usernames are free text; names that need escaping get a hash suffix so they stay distinct.
+    private static String fileNameOf(String username) {
+        StringBuilder name = new StringBuilder(username.length());
+        boolean replaced = false;
+        for (int i = 0; i < username.length(); i++) {
+            char c = username.charAt(i);
+            boolean safe = Character.isLetterOrDigit(c) || c == '-' || c == '_';
+            name.append(safe ? c : '_');
+            replaced |= !safe;
+        }
+        if (replaced || name.isEmpty()) {
+            name.append('~').append(Integer.toHexString(username.hashCode()));
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,63 @@
+package service;
+
+import model.CategorySummary;
+import model.Transaction;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+// Human-readable lines in the same wording as the console reports.
+public class TextReportWriter extends ReportWriter {
+    public TextReportWriter(WritableByteChannel channel, boolean closeChannel) {
+        super(channel, closeChannel);
+    }
+
+    @Override
+    protected void writeTotals(long income, long expenses, long balance) throws IOException {
+        putAscii("Total Income: ");
+        putMoney(income);
+        putAscii("\nTotal Expenses: ");
+        putMoney(expenses);
+        putAscii("\nTotal Balance: ");
+        putMoney(balance);
+        put((byte) '\n');
+    }
+
+    @Override
+    protected void writeCategory(CategorySummary category) throws IOException {
+        putAscii(category.expense() ? "Expense " : "Income ");
+        putUtf8(category.name());
+        if (category.expense()) {
+            putAscii(": Spent ");
+            putMoney(category.amount());
+            if (category.budget() > 0) {
+                putAscii(", Budget: ");
+                putMoney(category.budget());
+                putAscii(", Remaining: ");
+                putMoney(category.remaining());
+            }
+        } else {
+            putAscii(": ");
+            putMoney(category.amount());
+        }
+        put((byte) '\n');
+    }
+
+    @Override
+    protected void writeTransaction(String category, long amount, boolean expense, long timestamp, String currency) throws IOException {
+        if (timestamp == Transaction.UNDATED) {
+            putAscii("----------");
+        } else {
+            putDate(timestamp);
+        }
+        putAscii(expense ? " expense " : " income ");
+        putUtf8(category);
+        put((byte) ' ');
+        putMoney(amount);
+        if (currency != null) {
+            put((byte) ' ');
+            putAscii(currency);
+        }
+        put((byte) '\n');
+    }
+}
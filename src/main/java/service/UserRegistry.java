@@ -0,0 +1,313 @@
+package service;
+
+import model.Metrics;
+import model.User;
+import model.Wallet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Thread-safe registry of users: a bounded cache over the per-user store in which every loaded
+// wallet journals its changes. Users held by an open session are pinned and never evicted.
+// Pinning and removal of one user go through ConcurrentHashMap.compute, so they are atomic with
+// respect to each other; disk reads and write-backs happen outside it, so a slow one never holds
+// a map bin lock and stalls other users hashed to the same bin.
+public class UserRegistry {
+    // An entry is in the map from the moment someone pins the user. The first pinner loads it and
+    // completes the future; later ones wait on it rather than read the same record again.
+    private static class CachedUser {
+        final CompletableFuture<User> loaded = new CompletableFuture<>();
+        final AtomicBoolean loading = new AtomicBoolean();
+        volatile User user;
+        volatile long lastAccess;
+        int sessions;
+
+        CachedUser() {
+        }
+
+        CachedUser(User user) {
+            this.user = user;
+            loading.set(true);
+            loaded.complete(user);
+        }
+    }
+
+    private static final Metrics.Timer CHECKPOINT = Metrics.timer("store.checkpoint");
+
+    private final UserStore store;
+    private final Journal journal;
+    private final int cacheSize;
+    private final ConcurrentHashMap<String, CachedUser> users = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    // Serializes write-backs, so an older snapshot of a user never lands after a newer one.
+    private final ReentrantLock writeBackLock = new ReentrantLock();
+
+    public UserRegistry(UserStore store, Journal journal, int cacheSize) {
+        this.store = store;
+        this.journal = journal;
+        this.cacheSize = cacheSize;
+    }
+
+    public boolean exists(String username) {
+        return users.containsKey(username) || (store != null && store.contains(username));
+    }
+
+    // Returns the user pinned for a session, loading it from the store if needed, or null if unknown.
+    public User acquire(String username) {
+        CachedUser cached = users.compute(username, (name, entry) -> {
+            if (entry == null) {
+                entry = new CachedUser();
+            }
+            entry.sessions++;
+            entry.lastAccess = clock.incrementAndGet();
+            return entry;
+        });
+
+        if (cached.loading.compareAndSet(false, true)) {
+            User user = read(username);
+            if (user != null) {
+                attachJournal(user);
+            }
+            cached.user = user;
+            cached.loaded.complete(user);
+        }
+        User user = cached.loaded.join();
+        if (user == null) {
+            // Unknown or unreadable: unpin, and drop the entry once nobody waits on it, so the
+            // next acquire reads the store again.
+            users.computeIfPresent(username, (name, entry) -> entry == cached && --entry.sessions <= 0 ? null : entry);
+            return null;
+        }
+
+        evictIdleUsers();
+        return user;
+    }
+
+    // Every known username, cached or stored.
+    public Set<String> usernames() {
+        Set<String> names = new HashSet<>(users.keySet());
+        if (store != null) {
+            names.addAll(store.usernames());
+        }
+        return names;
+    }
+
+    // Users that may have a recurring transaction due on or before the given epoch day: loaded
+    // users are checked directly, stored ones through the due table of the store's index.
+    public Set<String> usernamesDueBy(long day) {
+        Set<String> names = new HashSet<>();
+        if (store != null) {
+            names.addAll(store.usernamesDueBy(day));
+        }
+        for (CachedUser entry : users.values()) {
+            User user = entry.user;
+            if (user != null && user.getWallet().getNextRecurringDay() <= day) {
+                names.add(user.getUsername());
+            }
+        }
+        return names;
+    }
+
+    // For read-only jobs: the cached user if loaded, otherwise a private copy read from the store
+    // that is neither cached nor journaled, so scanning every user does not churn the cache.
+    public User peek(String username) {
+        CachedUser entry = users.get(username);
+        User user = entry == null ? null : entry.user;
+        return user != null ? user : read(username);
+    }
+
+    public void release(User user) {
+        if (user != null) {
+            users.computeIfPresent(user.getUsername(), (name, entry) -> {
+                entry.sessions = Math.max(0, entry.sessions - 1);
+                return entry;
+            });
+        }
+    }
+
+    // Creates and pins a new user, or returns null if the name is taken. If its journal record
+    // cannot be written the user is not created.
+    public synchronized User register(String username, String password) throws IOException {
+        if (exists(username)) {
+            return null;
+        }
+
+        User user = new User(username, password);
+        if (journal != null) {
+            journal.appendRegister(user);
+        }
+        attachJournal(user);
+
+        CachedUser entry = new CachedUser(user);
+        entry.sessions = 1;
+        entry.lastAccess = clock.incrementAndGet();
+        users.put(username, entry);
+        evictIdleUsers();
+        return user;
+    }
+
+    // Replays the journal over the stored users; call once before any session starts.
+    public int recover() throws IOException {
+        if (journal == null) {
+            return 0;
+        }
+
+        int replayed = journal.replay(name -> {
+            CachedUser entry = users.get(name);
+            if (entry == null) {
+                User user = read(name);
+                if (user == null) {
+                    return null;
+                }
+                entry = new CachedUser(user);
+                users.put(name, entry);
+            }
+            return entry.user;
+        }, user -> users.put(user.getUsername(), new CachedUser(user)));
+
+        for (CachedUser entry : users.values()) {
+            attachJournal(entry.user);
+        }
+        return replayed;
+    }
+
+    // Writes every changed user and publishes them, then drops the journal records they cover.
+    // Safe to run from a background thread: sessions are only held up while a changed wallet is
+    // copied, never during disk I/O. Unchanged users cost nothing.
+    public void checkpoint() throws IOException {
+        if (store == null) {
+            return;
+        }
+
+        SaveEvent event = new SaveEvent();
+        event.begin();
+        long started = Metrics.start();
+        int written = 0;
+        long bytes = 0;
+        writeBackLock.lock();
+        try {
+            long journalSeq = journal == null ? 0 : journal.lastSeq();
+            for (CachedUser entry : users.values()) {
+                if (entry.user == null) {
+                    continue;
+                }
+                int length = writeBack(entry.user);
+                if (length > 0) {
+                    written++;
+                    bytes += length;
+                }
+            }
+            store.commit();
+            for (CachedUser entry : users.values()) {
+                if (entry.user != null) {
+                    entry.user.getWallet().clearFailure();
+                }
+            }
+            if (journal != null) {
+                journal.discardThrough(journalSeq);
+            }
+            evictIdleUsers();
+        } finally {
+            writeBackLock.unlock();
+        }
+        CHECKPOINT.stop(started);
+        if (event.shouldCommit()) {
+            event.users = written;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    public long journalSize() throws IOException {
+        return journal == null ? 0 : journal.size();
+    }
+
+    // Drops least recently used users beyond the cache size, writing back unsaved changes first.
+    // Skipped while a checkpoint is running; the cache may overshoot until the next call.
+    private void evictIdleUsers() {
+        if (users.size() <= cacheSize || !writeBackLock.tryLock()) {
+            return;
+        }
+        try {
+            evictLeastRecentlyUsed();
+        } finally {
+            writeBackLock.unlock();
+        }
+    }
+
+    // Writes an idle user back outside the map, then removes it only if it is still idle and
+    // clean; a session that pinned it meanwhile keeps it cached.
+    private void evictLeastRecentlyUsed() {
+        List<CachedUser> candidates = new ArrayList<>(users.values());
+        candidates.sort(Comparator.comparingLong(entry -> entry.lastAccess));
+        for (CachedUser candidate : candidates) {
+            if (users.size() <= cacheSize) {
+                break;
+            }
+            User user = candidate.user;
+            if (user == null || candidate.sessions > 0) {
+                continue;
+            }
+            try {
+                writeBack(user);
+            } catch (IOException e) {
+                System.out.println("Error saving user " + user.getUsername() + ": " + e.getMessage());
+                continue;
+            }
+            users.computeIfPresent(user.getUsername(), (name, entry) ->
+                    entry == candidate && entry.sessions == 0 && !user.getWallet().isDirty() ? null : entry);
+        }
+    }
+
+    // Returns the length of the record written, or 0 if the user had no unsaved changes.
+    private int writeBack(User user) throws IOException {
+        Wallet wallet = user.getWallet();
+        if (store == null || !wallet.isDirty()) {
+            return 0;
+        }
+
+        // Copy under the read lock, serialize and write after releasing it.
+        long version;
+        User snapshot;
+        Lock lock = wallet.readLock();
+        lock.lock();
+        try {
+            version = wallet.getVersion();
+            snapshot = user.snapshot();
+        } finally {
+            lock.unlock();
+        }
+        byte[] record = UserStore.encode(snapshot);
+        store.write(user.getUsername(), record, snapshot.getWallet().getNextRecurringDay());
+        wallet.markSaved(version);
+        return record.length;
+    }
+
+    private User read(String username) {
+        if (store == null) {
+            return null;
+        }
+        try {
+            return store.read(username);
+        } catch (IOException e) {
+            System.out.println("Error loading user " + username + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void attachJournal(User user) {
+        if (journal != null) {
+            user.getWallet().setListener(journal.listenerFor(user));
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package service;
+
+import model.Metrics;
+import model.SnapshotCodec;
+import model.User;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Per-user storage: serialized users are appended to a data file and located through an index of
+// username -> (offset, length). Only the index is read at startup; a user is deserialized on demand.
+// Compaction copies the live records into the next data file generation, which the index names.
+// The index ends with a table of the users that have recurring transactions and the day the next
+// one is due, so a catch-up only loads users that actually have something due, and with the
+// record format. Records are SnapshotCodec snapshots; stores from before the codec hold Java
+// serialized users, which migrate() converts once.
+public class UserStore implements Closeable {
+    private record Entry(long offset, int length) {
+    }
+
+    private static final int SERIALIZED_FORMAT = 1;
+    private static final int SNAPSHOT_FORMAT = 2;
+    private static final boolean COMPRESS = Boolean.getBoolean("finance.store.compress");
+    private static final Metrics.Timer READ = Metrics.timer("store.read");
+
+    private final Path directory;
+    private final String baseName;
+    private final Path indexPath;
+    private final Map<String, Entry> index = new HashMap<>();
+    private final Map<String, Long> dueDays = new HashMap<>();
+    private FileChannel data;
+    private int generation;
+    private int format = SNAPSHOT_FORMAT;
+    private long liveBytes;
+    private boolean modified;
+
+    public UserStore(Path directory, String baseName) throws IOException {
+        this.directory = directory;
+        this.baseName = baseName;
+        this.indexPath = directory.resolve(baseName + ".idx");
+        loadIndex();
+        this.data = FileChannel.open(dataPath(generation), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Files.deleteIfExists(dataPath(generation + 1));
+    }
+
+    private Path dataPath(int generation) {
+        return directory.resolve(baseName + "." + generation + ".dat");
+    }
+
+    private void loadIndex() throws IOException {
+        if (!Files.exists(indexPath)) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            generation = buffer.getInt();
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(name);
+                Entry entry = new Entry(buffer.getLong(), buffer.getInt());
+                index.put(new String(name, StandardCharsets.UTF_8), entry);
+                liveBytes += entry.length();
+            }
+            // Indexes written before recurring transactions end here, and before the codec after
+            // the due table.
+            int dueCount = buffer.hasRemaining() ? buffer.getInt() : 0;
+            for (int i = 0; i < dueCount; i++) {
+                byte[] name = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(name);
+                dueDays.put(new String(name, StandardCharsets.UTF_8), buffer.getLong());
+            }
+            format = buffer.hasRemaining() ? buffer.getInt() : SERIALIZED_FORMAT;
+        }
+    }
+
+    public boolean hasIndex() {
+        return Files.exists(indexPath);
+    }
+
+    public synchronized boolean contains(String username) {
+        return index.containsKey(username);
+    }
+
+    public synchronized Set<String> usernames() {
+        return Set.copyOf(index.keySet());
+    }
+
+    // Stored users with a recurring transaction due on or before the given epoch day.
+    public synchronized Set<String> usernamesDueBy(long day) {
+        Set<String> names = new HashSet<>();
+        for (Map.Entry<String, Long> e : dueDays.entrySet()) {
+            if (e.getValue() <= day) {
+                names.add(e.getKey());
+            }
+        }
+        return names;
+    }
+
+    // Only the file read holds the lock; decoding runs in parallel for concurrent readers.
+    public User read(String username) throws IOException {
+        LoadEvent event = new LoadEvent();
+        event.begin();
+        long started = Metrics.start();
+        ByteBuffer record = readRecord(username);
+        if (record == null) {
+            return null;
+        }
+        int bytes = record.remaining();
+        User user = SnapshotCodec.isLegacy(record) ? deserialize(record) : SnapshotCodec.decode(record);
+        READ.stop(started);
+        if (event.shouldCommit()) {
+            event.username = username;
+            event.users = 1;
+            event.bytes = bytes;
+            event.commit();
+        }
+        return user;
+    }
+
+    private synchronized ByteBuffer readRecord(String username) throws IOException {
+        Entry entry = index.get(username);
+        if (entry == null) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(entry.length());
+        while (buffer.hasRemaining()) {
+            if (data.read(buffer, entry.offset() + buffer.position()) < 0) {
+                throw new EOFException("Truncated record for user " + username);
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static User deserialize(ByteBuffer record) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(record.array(), record.position(), record.remaining()))) {
+            return (User) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // Rewrites the Java serialized records of an older store as snapshots, one user at a time.
+    // The index then records the new format, so this runs once. Returns the users converted.
+    public int migrate() throws IOException {
+        if (format == SNAPSHOT_FORMAT) {
+            return 0;
+        }
+
+        int converted = 0;
+        for (String username : usernames()) {
+            ByteBuffer record = readRecord(username);
+            if (SnapshotCodec.isLegacy(record)) {
+                write(deserialize(record));
+                converted++;
+            }
+        }
+        synchronized (this) {
+            format = SNAPSHOT_FORMAT;
+            modified = true;
+        }
+        commit();
+        return converted;
+    }
+
+    public static byte[] encode(User user) {
+        return SnapshotCodec.encode(user, COMPRESS);
+    }
+
+    public void write(User user) throws IOException {
+        write(user.getUsername(), encode(user), user.getWallet().getNextRecurringDay());
+    }
+
+    // Appends a new version of the user; the old record becomes garbage until the next compaction.
+    // nextDueDay is the wallet's getNextRecurringDay() at the time of the snapshot.
+    public synchronized void write(String username, byte[] record, long nextDueDay) throws IOException {
+        long offset = data.size();
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            data.write(buffer, offset + buffer.position());
+        }
+
+        Entry previous = index.put(username, new Entry(offset, record.length));
+        liveBytes += record.length - (previous == null ? 0 : previous.length());
+        if (nextDueDay == Long.MAX_VALUE) {
+            dueDays.remove(username);
+        } else {
+            dueDays.put(username, nextDueDay);
+        }
+        modified = true;
+    }
+
+    // Makes every write so far durable and publishes the index that points at it.
+    public synchronized void commit() throws IOException {
+        if (!modified) {
+            return;
+        }
+
+        FileChannel previous = null;
+        if (data.size() > 2 * liveBytes + 64 * 1024) {
+            previous = compact();
+        }
+        data.force(false);
+
+        int size = 16;
+        for (String name : index.keySet()) {
+            size += 2 + name.getBytes(StandardCharsets.UTF_8).length + 12;
+        }
+        for (String name : dueDays.keySet()) {
+            size += 2 + name.getBytes(StandardCharsets.UTF_8).length + 8;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(generation).putInt(index.size());
+        for (Map.Entry<String, Entry> e : index.entrySet()) {
+            byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) name.length).put(name);
+            buffer.putLong(e.getValue().offset()).putInt(e.getValue().length());
+        }
+        buffer.putInt(dueDays.size());
+        for (Map.Entry<String, Long> e : dueDays.entrySet()) {
+            byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) name.length).put(name).putLong(e.getValue());
+        }
+        buffer.putInt(format);
+        buffer.flip();
+
+        Path tmp = directory.resolve(baseName + ".idx.tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        modified = false;
+
+        if (previous != null) {
+            previous.close();
+            Files.deleteIfExists(dataPath(generation - 1));
+        }
+    }
+
+    // Copies the live records into a fresh data file; the old one is kept until the new index is published.
+    private FileChannel compact() throws IOException {
+        FileChannel target = FileChannel.open(dataPath(generation + 1), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        long position = 0;
+        for (Map.Entry<String, Entry> e : index.entrySet()) {
+            Entry entry = e.getValue();
+            long copied = 0;
+            while (copied < entry.length()) {
+                copied += data.transferTo(entry.offset() + copied, entry.length() - copied, target);
+            }
+            e.setValue(new Entry(position, entry.length()));
+            position += entry.length();
+        }
+
+        FileChannel previous = data;
+        data = target;
+        generation++;
+        liveBytes = position;
+        return previous;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (data.isOpen()) {
+            data.close();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MoneyTest {
+    @Test
+    void formatsTheExtremes() {
+        assertEquals("-92233720368547758.08", Money.format(Long.MIN_VALUE));
+        assertEquals("92233720368547758.07", Money.format(Long.MAX_VALUE));
+    }
+
+    @Test
+    void formatsSmallAmounts() {
+        assertEquals("0.00", Money.format(0));
+        assertEquals("-0.05", Money.format(-5));
+        assertEquals("12.34", Money.format(1234));
+    }
+
+    @Test
+    void parsesWhatItFormats() {
+        for (long cents : new long[] {0, 7, -7, 1234, -100, 123_456_789_012_345L}) {
+            assertEquals(cents, Money.parse(Money.format(cents)));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The primitive encodings, the optional deflate of blocks, and a whole user read back as written.
+class SnapshotCodecTest {
+    private static final LocalDate START = LocalDate.of(2026, 10, 1);
+
+    private static SnapshotCodec.Input input(SnapshotCodec.Output out) {
+        return new SnapshotCodec.Input(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    @Test
+    void varintsTakeOneByteForEverySevenBits() {
+        long[] values = {0, 127, 128, 300, Integer.MAX_VALUE, Long.MAX_VALUE, -1};
+        int[] lengths = {1, 1, 2, 2, 5, 9, 10};
+        for (int i = 0; i < values.length; i++) {
+            SnapshotCodec.Output out = new SnapshotCodec.Output(16, false);
+            out.unsigned(values[i]);
+            assertEquals(lengths[i], out.toByteArray().length, Long.toString(values[i]));
+            assertEquals(values[i], input(out).unsigned());
+        }
+    }
+
+    @Test
+    void zigzagKeepsSmallNegativeNumbersShort() {
+        SnapshotCodec.Output out = new SnapshotCodec.Output(16, false);
+        out.signed(-1);
+        out.signed(1);
+        out.signed(-64);
+        assertEquals(3, out.toByteArray().length);
+
+        long[] values = {-1, 1, -64, 0, Long.MIN_VALUE, Long.MAX_VALUE};
+        out = new SnapshotCodec.Output(16, false);
+        for (long value : values) {
+            out.signed(value);
+        }
+        SnapshotCodec.Input in = input(out);
+        for (long value : values) {
+            assertEquals(value, in.signed());
+        }
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    void largeBlocksAreDeflatedOnlyWhenCompressing() throws IOException {
+        for (boolean compress : new boolean[] {false, true}) {
+            SnapshotCodec.Output out = new SnapshotCodec.Output(16, compress);
+            out.block(block -> {
+                for (int i = 0; i < 1000; i++) {
+                    block.unsigned(i % 10);
+                }
+            });
+            out.block(block -> block.string("small"));
+            byte[] bytes = out.toByteArray();
+            assertEquals(compress ? 1 : 0, bytes[0]);
+            assertEquals(compress, bytes.length < 1000);
+
+            SnapshotCodec.Input in = input(out);
+            SnapshotCodec.Input large = in.block();
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i % 10, large.unsigned());
+            }
+            assertFalse(large.hasRemaining());
+            assertEquals("small", in.block().string());
+        }
+    }
+
+    @Test
+    void usersReadBackAsWritten() throws Exception {
+        User user = new User("alice", "secret");
+        Wallet wallet = user.getWallet();
+        wallet.addTransactionCreatingCategory(new Transaction("salary", 500_000, false, Transaction.timestampOf(START)));
+        wallet.addTransactionCreatingCategory(new Transaction("food", 1_250, true, Transaction.timestampOf(START.plusDays(3))));
+        wallet.addTransactionCreatingCategory(new Transaction("food", 4_000, true, Transaction.timestampOf(START.minusDays(40)), "EUR"));
+        wallet.addTransactionCreatingCategory(new Transaction("gift", 700, false, Transaction.UNDATED));
+        // Enough rows for the transaction block to be deflated when compressing.
+        for (int i = 0; i < 200; i++) {
+            wallet.addTransactionCreatingCategory(new Transaction("coffee", 350 + i % 3, true, Transaction.timestampOf(START.plusDays(i))));
+        }
+        wallet.setBudgetCreating("food", 20_000);
+        wallet.setBalanceFloor(1_000);
+        wallet.addRecurring(new RecurringTransaction("rent", 90_000, true, RecurringTransaction.Frequency.MONTHLY, START));
+
+        assertTrue(SnapshotCodec.encode(user, true).length < SnapshotCodec.encode(user, false).length);
+        for (boolean compress : new boolean[] {false, true}) {
+            User copy = SnapshotCodec.decode(ByteBuffer.wrap(SnapshotCodec.encode(user, compress)));
+            Wallet decoded = copy.getWallet();
+            assertEquals("alice", copy.getUsername());
+            assertEquals("secret", copy.getPassword());
+            assertEquals(wallet.getSummary(), decoded.getSummary());
+            assertEquals(1_000, decoded.getBalanceFloor());
+            assertEquals(rows(wallet.getTransactionStore()), rows(decoded.getTransactionStore()));
+            assertEquals(wallet.getRecurring().toString(), decoded.getRecurring().toString());
+        }
+    }
+
+    private static List<String> rows(TransactionStore store) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < store.size(); i++) {
+            rows.add(store.getCategoryName(store.getCategoryId(i)) + " " + store.getAmount(i) + " " + store.isExpense(i)
+                    + " " + store.getTimestamp(i) + " " + store.getCurrency(store.getCurrencyId(i)));
+        }
+        return rows;
+    }
+
+    @Test
+    void truncatedSnapshotsAreReportedAsCorrupt() {
+        User user = new User("alice", "secret");
+        user.getWallet().addTransactionCreatingCategory(new Transaction("food", 1_250, true, Transaction.timestampOf(START)));
+        byte[] bytes = SnapshotCodec.encode(user, false);
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 4);
+        assertThrows(IOException.class, () -> SnapshotCodec.decode(ByteBuffer.wrap(truncated)));
+    }
+}
@@ -0,0 +1,96 @@
+package model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Converted totals must follow every change to the wallet, not only changes in other currencies.
+class WalletCurrencyTest {
+    private static final long DAY = Transaction.timestampOf(LocalDate.of(2026, 10, 1));
+
+    private ExchangeRates previous;
+    private Wallet wallet;
+
+    @BeforeEach
+    void setUp() {
+        previous = ExchangeRates.current();
+        ExchangeRates.setCurrent(new ExchangeRates(Map.of("EUR", 1.1)));
+        wallet = new Wallet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ExchangeRates.setCurrent(previous);
+    }
+
+    @Test
+    void homeTransactionsAfterForeignOnesReachTheTotals() {
+        wallet.addTransactionCreatingCategory(new Transaction("salary", 10_000, false, DAY, "EUR"));
+        assertEquals(11_000, wallet.getTotalIncomeRaw());
+
+        wallet.addTransactionCreatingCategory(new Transaction("salary", 50_000, false, DAY));
+        assertEquals(61_000, wallet.getTotalIncomeRaw());
+        assertEquals(61_000, wallet.getTotalBalanceRaw());
+        assertEquals("Total Income: 610.00", wallet.getTotalIncome());
+        assertEquals("Total Balance: 610.00", wallet.getTotalBalance());
+        assertEquals(61_000, wallet.getSummary().income());
+
+        wallet.addTransactionCreatingCategory(new Transaction("food", 2_000, true, DAY));
+        assertEquals(2_000, wallet.getTotalExpensesRaw());
+        assertEquals(59_000, wallet.getTotalBalanceRaw());
+        assertEquals(59_000, wallet.getSummary().balance());
+    }
+
+    @Test
+    void batchRowsInBothCurrenciesReachTheTotals() {
+        wallet.addTransactionCreatingCategory(new Transaction("salary", 10_000, false, DAY, "EUR"));
+        assertEquals(11_000, wallet.getTotalIncomeRaw());
+
+        TransactionStore batch = new TransactionStore();
+        batch.add("salary", 5_000, false, DAY);
+        batch.add(batch.intern("salary"), batch.internCurrency("EUR"), 1_000, false, DAY);
+        wallet.addTransactions(batch);
+
+        assertEquals(17_100, wallet.getTotalIncomeRaw());
+        assertEquals(17_100, wallet.getTotalBalanceRaw());
+    }
+
+    @Test
+    void rateChangesReconvertTheTotals() {
+        wallet.addTransactionCreatingCategory(new Transaction("salary", 10_000, false, DAY, "EUR"));
+        wallet.addTransactionCreatingCategory(new Transaction("salary", 50_000, false, DAY));
+        assertEquals(61_000, wallet.getTotalIncomeRaw());
+
+        ExchangeRates.setCurrent(new ExchangeRates(Map.of("EUR", 1.2)));
+        assertEquals(62_000, wallet.getTotalIncomeRaw());
+    }
+
+    @Test
+    void currenciesWithoutARateAreLeftOutOfTheTotalsTheyAffect() {
+        wallet.addTransactionCreatingCategory(new Transaction("salary", 10_000, false, DAY, "JPY"));
+        wallet.addTransactionCreatingCategory(new Transaction("food", 1_000, true, DAY));
+
+        assertEquals("Total Income: 0.00 (excluding JPY: no exchange rate)", wallet.getTotalIncome());
+        assertEquals("Total Expenses: 10.00", wallet.getTotalExpenses());
+        assertEquals("Total Balance: -10.00 (excluding JPY: no exchange rate)", wallet.getTotalBalance());
+    }
+
+    @Test
+    void balanceAlertsSeeHomeTransactionsAfterForeignOnes() {
+        List<String> alerts = new ArrayList<>();
+        wallet.setAlertListener(alerts::add);
+        wallet.addTransactionCreatingCategory(new Transaction("salary", 10_000, false, DAY, "EUR"));
+        wallet.addTransactionCreatingCategory(new Transaction("food", 20_000, true, DAY));
+
+        assertEquals(-9_000, wallet.getTotalBalanceRaw());
+        assertTrue(alerts.contains("Warning: Your total balance is negative."), alerts.toString());
+    }
+}
@@ -0,0 +1,104 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// A change the listener cannot record fails in the caller and stops the wallet from taking more
+// until it has been saved.
+class WalletListenerFailureTest {
+    private static final long DAY = Transaction.timestampOf(LocalDate.of(2026, 10, 1));
+
+    private Wallet wallet;
+    private boolean failing;
+
+    @BeforeEach
+    void setUp() {
+        wallet = new Wallet();
+        wallet.addTransactionCreatingCategory(new Transaction("salary", 10_000, false, DAY));
+        wallet.setListener(new WalletListener() {
+            @Override
+            public void transactionAdded(Transaction transaction) {
+                check();
+            }
+
+            @Override
+            public void categoryAdded(Category category) {
+                check();
+            }
+
+            @Override
+            public void budgetChanged(ExpenseCategory category) {
+                check();
+            }
+
+            @Override
+            public void balanceFloorChanged(long floor) {
+                check();
+            }
+
+            @Override
+            public void recurringAdded(RecurringTransaction definition) {
+                check();
+            }
+
+            @Override
+            public void recurringApplied(RecurringTransaction definition) {
+                check();
+            }
+
+            @Override
+            public void recurringRemoved(RecurringTransaction definition) {
+                check();
+            }
+        });
+    }
+
+    private void check() {
+        if (failing) {
+            throw new UncheckedIOException("disk full", new IOException("disk full"));
+        }
+    }
+
+    @Test
+    void failedChangesReachTheCallerAndBlockLaterOnes() {
+        failing = true;
+        assertThrows(UncheckedIOException.class, () -> wallet.addTransactionCreatingCategory(new Transaction("salary", 5_000, false, DAY)));
+
+        failing = false;
+        UncheckedIOException later = assertThrows(UncheckedIOException.class, () -> wallet.setBalanceFloor(100));
+        assertTrue(later.getMessage().contains("disk full"), later.getMessage());
+        assertEquals(15_000, wallet.getTotalIncomeRaw());
+    }
+
+    @Test
+    void savingTheWalletClearsTheFailure() {
+        failing = true;
+        assertThrows(UncheckedIOException.class, () -> wallet.setBalanceFloor(100));
+
+        failing = false;
+        wallet.markSaved(wallet.getVersion());
+        wallet.clearFailure();
+        wallet.addTransactionCreatingCategory(new Transaction("salary", 5_000, false, DAY));
+        assertEquals(15_000, wallet.getTotalIncomeRaw());
+    }
+
+    @Test
+    void failedBatchesKeepTheTotalsInStepWithTheHistory() {
+        TransactionStore batch = new TransactionStore();
+        batch.add("salary", 1_000, false, DAY);
+        batch.add("salary", 2_000, false, DAY);
+
+        failing = true;
+        assertThrows(UncheckedIOException.class, () -> wallet.addTransactions(batch));
+        assertEquals(13_000, wallet.getTotalIncomeRaw());
+        assertEquals(3, wallet.getTransactionStore().size());
+    }
+}
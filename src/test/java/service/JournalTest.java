@@ -0,0 +1,168 @@
+package service;
+
+import model.ExpenseCategory;
+import model.Transaction;
+import model.User;
+import model.Wallet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+// Replay rebuilds wallets from the journal, drops a torn or corrupt tail, and skips what a
+// checkpoint already covers.
+class JournalTest {
+    private static final long DAY = Transaction.timestampOf(LocalDate.of(2026, 10, 1));
+
+    @TempDir
+    Path directory;
+
+    private Path path;
+
+    @BeforeEach
+    void setUp() {
+        path = directory.resolve("test.journal");
+    }
+
+    private Journal open() throws IOException {
+        return new Journal(path, Journal.FsyncPolicy.NEVER, 64);
+    }
+
+    private User register(Journal journal, String username) throws IOException {
+        User user = new User(username, "secret");
+        journal.appendRegister(user);
+        user.getWallet().setListener(journal.listenerFor(user));
+        return user;
+    }
+
+    private static void expense(User user, long amount) {
+        user.getWallet().addTransactionCreatingCategory(new Transaction("food", amount, true, DAY));
+    }
+
+    private Map<String, User> replay() throws IOException {
+        Map<String, User> users = new HashMap<>();
+        try (Journal journal = open()) {
+            journal.replay(users::get, user -> users.put(user.getUsername(), user));
+        }
+        return users;
+    }
+
+    @Test
+    void replayRebuildsTheWallet() throws Exception {
+        try (Journal journal = open()) {
+            User user = register(journal, "alice");
+            expense(user, 1_000);
+            user.getWallet().addTransactionCreatingCategory(new Transaction("salary", 5_000, false, DAY, "EUR"));
+            ((ExpenseCategory) user.getWallet().getCategoryByName("food")).setBudget(2_500);
+            user.getWallet().setBalanceFloor(300);
+        }
+
+        User replayed = replay().get("alice");
+        assertNotNull(replayed);
+        assertEquals("secret", replayed.getPassword());
+        Wallet wallet = replayed.getWallet();
+        assertEquals(1_000, wallet.getTotalExpensesRaw());
+        assertEquals(2, wallet.getTransactionStore().size());
+        assertEquals(2_500, ((ExpenseCategory) wallet.getCategoryByName("food")).getBudget());
+        assertEquals(300, wallet.getBalanceFloor());
+    }
+
+    @Test
+    void aTornTailIsDroppedAndLaterRecordsAreKept() throws Exception {
+        try (Journal journal = open()) {
+            User user = register(journal, "alice");
+            expense(user, 100);
+            expense(user, 200);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        assertEquals(100, replay().get("alice").getWallet().getTotalExpensesRaw());
+
+        // Replay cut the torn record off, so a record appended now is read back after the others.
+        Map<String, User> users = new HashMap<>();
+        try (Journal journal = open()) {
+            journal.replay(users::get, user -> users.put(user.getUsername(), user));
+            User user = users.get("alice");
+            user.getWallet().setListener(journal.listenerFor(user));
+            expense(user, 400);
+        }
+        assertEquals(500, replay().get("alice").getWallet().getTotalExpensesRaw());
+    }
+
+    @Test
+    void aRecordWithABadChecksumEndsTheReplay() throws Exception {
+        try (Journal journal = open()) {
+            User user = register(journal, "alice");
+            expense(user, 100);
+            expense(user, 200);
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(path, bytes);
+
+        assertEquals(100, replay().get("alice").getWallet().getTotalExpensesRaw());
+        assertEquals(bytes.length - (8 + payloadLength(bytes)), Files.size(path));
+    }
+
+    @Test
+    void discardedRecordsAreNotReplayed() throws Exception {
+        long checkpoint;
+        try (Journal journal = open()) {
+            User user = register(journal, "alice");
+            expense(user, 100);
+            checkpoint = journal.lastSeq();
+            expense(user, 200);
+            journal.discardThrough(checkpoint);
+        }
+
+        // The user as a checkpoint stored it, so only the later record applies.
+        User stored = new User("alice", "secret");
+        stored.getWallet().addTransactionCreatingCategory(new Transaction("food", 100, true, DAY));
+        stored.getWallet().setJournalSeq(checkpoint);
+        try (Journal journal = open()) {
+            assertEquals(1, journal.replay(name -> stored, user -> { }));
+            assertEquals(checkpoint + 1, journal.lastSeq());
+        }
+        assertEquals(300, stored.getWallet().getTotalExpensesRaw());
+    }
+
+    @Test
+    void truncatingKeepsTheSequenceGoing() throws Exception {
+        long last;
+        try (Journal journal = open()) {
+            expense(register(journal, "alice"), 100);
+            last = journal.lastSeq();
+            journal.discardThrough(last);
+        }
+        try (Journal journal = open()) {
+            assertEquals(last, journal.lastSeq());
+            assertEquals(0, journal.replay(name -> null, user -> { }));
+        }
+    }
+
+    // Length of the last record's payload, found by walking the frames after the header.
+    private static int payloadLength(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int position = 8;
+        int length = 0;
+        while (position < bytes.length) {
+            length = buffer.getInt(position);
+            position += 8 + length;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,120 @@
+package service;
+
+import model.RecurringTransaction;
+import model.Transaction;
+import model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Users are found through the committed index, survive compaction, and the index trailer
+// (recurring due days and record format) is read back, or defaulted for older indexes.
+class UserStoreTest {
+    private static final LocalDate START = LocalDate.of(2026, 10, 1);
+
+    @TempDir
+    Path directory;
+
+    private UserStore open() throws IOException {
+        return new UserStore(directory, "users");
+    }
+
+    private static User user(String username, long expense) {
+        User user = new User(username, "secret");
+        user.getWallet().addTransactionCreatingCategory(new Transaction("food", expense, true, Transaction.timestampOf(START)));
+        return user;
+    }
+
+    @Test
+    void onlyCommittedWritesAreFoundAfterReopening() throws Exception {
+        try (UserStore store = open()) {
+            store.write(user("alice", 100));
+            store.write(user("bob", 200));
+            store.commit();
+            store.write(user("carol", 300));
+            assertEquals(300, store.read("carol").getWallet().getTotalExpensesRaw());
+        }
+
+        try (UserStore store = open()) {
+            assertEquals(Set.of("alice", "bob"), store.usernames());
+            assertEquals(200, store.read("bob").getWallet().getTotalExpensesRaw());
+            assertNull(store.read("carol"));
+        }
+    }
+
+    @Test
+    void compactionKeepsTheLatestRecordOfEachUser() throws Exception {
+        try (UserStore store = open()) {
+            store.write(user("alice", 100));
+            // Superseded versions of bob, well past the garbage compaction tolerates.
+            byte[] old = UserStore.encode(user("bob", 1));
+            for (int i = 0; i < 128 * 1024 / old.length; i++) {
+                store.write("bob", old, Long.MAX_VALUE);
+            }
+            store.write(user("bob", 220));
+            store.commit();
+        }
+
+        assertFalse(Files.exists(directory.resolve("users.0.dat")));
+        assertTrue(Files.exists(directory.resolve("users.1.dat")));
+        try (UserStore store = open()) {
+            assertEquals(100, store.read("alice").getWallet().getTotalExpensesRaw());
+            assertEquals(220, store.read("bob").getWallet().getTotalExpensesRaw());
+        }
+    }
+
+    @Test
+    void dueDaysComeBackFromTheIndex() throws Exception {
+        User alice = user("alice", 100);
+        alice.getWallet().addRecurring(new RecurringTransaction("rent", 50_000, true, RecurringTransaction.Frequency.MONTHLY, START));
+        try (UserStore store = open()) {
+            store.write(alice);
+            store.write(user("bob", 200));
+            store.commit();
+        }
+
+        try (UserStore store = open()) {
+            assertEquals(Set.of("alice"), store.usernamesDueBy(START.toEpochDay()));
+            assertEquals(Set.of(), store.usernamesDueBy(START.toEpochDay() - 1));
+        }
+    }
+
+    @Test
+    void anIndexWithoutTheTrailerHoldsSerializedUsersToMigrate() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(user("alice", 100));
+        }
+        try (UserStore store = open()) {
+            store.write("alice", bytes.toByteArray(), Long.MAX_VALUE);
+            store.commit();
+        }
+        // generation, count and one entry: the layout before the due table and format existed.
+        try (FileChannel index = FileChannel.open(directory.resolve("users.idx"), StandardOpenOption.WRITE)) {
+            index.truncate(4 + 4 + 2 + "alice".length() + 12);
+        }
+
+        try (UserStore store = open()) {
+            assertEquals(100, store.read("alice").getWallet().getTotalExpensesRaw());
+            assertEquals(1, store.migrate());
+        }
+        try (UserStore store = open()) {
+            assertEquals(0, store.migrate());
+            assertEquals(100, store.read("alice").getWallet().getTotalExpensesRaw());
+        }
+    }
+}